@@ -0,0 +1,253 @@
+package com.poloniumarts.chartdemo;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Path;
+import android.graphics.Shader;
+
+/**
+ * Frozen copy of the chart drawing before masking by clip rect, kept only for {@link MaskingBenchmarkFragment}.
+ * ViewPort, horizontal and vertical values are masked by view sized ALPHA_8 {@link BitmapShader}s set to every
+ * paint. Everything is drawn in view coordinates on a non-translated canvas, so masks are aligned with the content.
+ */
+class LegacyMaskedChart {
+
+    private final int width;
+    private final int height;
+    private final float viewPortMarginLeft;
+    private final float viewPortMarginBottom;
+    private final int verValuesMarginBottom;
+    private float viewPortLeft = 0;
+    private float viewPortRight = 100;
+    private final float viewPortBottom = 0;
+    private final float viewPortTop = 100;
+    private final float scaleX;
+    private final float scaleY;
+    private final int stepHor = 10;
+    private final int horSubLinesCount = 4;
+    private final int stepVer = 20;
+    private final int verSubLinesCount = 4;
+
+    private final Paint mainGridPaint;
+    private final Paint subGridPaint;
+    private final Paint horValuesPaint;
+    private final Paint verValuesPaint;
+    private final Paint linePaint;
+    private final Paint filledPaint;
+    private final Paint pointStrokePaint;
+    private final Paint pointFillPaint;
+    private final float pointRadius = 3;
+
+    private final float[] xs;
+    private final float[] ys;
+    private final Path path = new Path();
+    private final Path filledPath = new Path();
+    private final Matrix matrix = new Matrix();
+
+    private final Shader cropViewPortShader;
+    private final Shader cropHorValuesShader;
+    private final Shader cropVerValuesShader;
+
+    /**
+     * Instantiates chart of the same look as charts of the benchmark.
+     *
+     * @param width
+     *            width in pixels
+     * @param height
+     *            height in pixels
+     * @param valuesMargin
+     *            margin of ViewPort for values in pixels
+     * @param textSize
+     *            size of values text in pixels
+     * @param xs
+     *            horizontal coordinates of the line
+     * @param ys
+     *            vertical coordinates of the line
+     */
+    LegacyMaskedChart(int width, int height, int valuesMargin, float textSize, float[] xs, float[] ys) {
+        this.width = width;
+        this.height = height;
+        this.xs = xs;
+        this.ys = ys;
+        viewPortMarginLeft = valuesMargin;
+        viewPortMarginBottom = valuesMargin;
+        verValuesMarginBottom = valuesMargin;
+        scaleX = (width - viewPortMarginLeft) / (viewPortRight - viewPortLeft);
+        scaleY = (height - viewPortMarginBottom) / (viewPortTop - viewPortBottom);
+
+        mainGridPaint = createPaint(0xaa888888);
+        subGridPaint = createPaint(0x44888888);
+        horValuesPaint = createPaint(0xff444444);
+        horValuesPaint.setTextSize(textSize);
+        verValuesPaint = createPaint(0xff444444);
+        verValuesPaint.setTextSize(textSize);
+        linePaint = createPaint(0xff33b5e5);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(2);
+        filledPaint = createPaint(0x4433b5e5);
+        pointStrokePaint = createPaint(0xff33b5e5);
+        pointStrokePaint.setStyle(Paint.Style.STROKE);
+        pointStrokePaint.setStrokeWidth(2);
+        pointFillPaint = createPaint(0xffffffff);
+
+        path.moveTo(xs[0], ys[0]);
+        for (int i = 1; i < xs.length; i++) {
+            path.lineTo(xs[i], ys[i]);
+        }
+        filledPath.set(path);
+        filledPath.lineTo(xs[xs.length - 1], 0);
+        filledPath.lineTo(xs[0], 0);
+        filledPath.close();
+
+        cropViewPortShader = createMask(viewPortMarginLeft - 1, -1, width + 1, height - viewPortMarginBottom + 1);
+        cropHorValuesShader = createMask(0, 0, width, height + horValuesPaint.descent());
+        cropVerValuesShader = createMask(0, 0, width, height - verValuesMarginBottom + verValuesPaint.descent());
+    }
+
+    private Shader createMask(float left, float top, float right, float bottom) {
+        Bitmap cropBitmap = Bitmap.createBitmap(width, height, Config.ALPHA_8);
+        Canvas cropCanvas = new Canvas(cropBitmap);
+        Paint cropPaint = new Paint();
+        cropPaint.setColor(0xffffffff);
+        cropPaint.setStyle(Paint.Style.FILL);
+        cropCanvas.drawRect(left, top, right, bottom, cropPaint);
+        return new BitmapShader(cropBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+    }
+
+    private static Paint createPaint(int color) {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setColor(color);
+        return paint;
+    }
+
+    /**
+     * Moves ViewPort horizontally.
+     *
+     * @param deltaX
+     *            horizontal delta
+     */
+    void moveViewPort(float deltaX) {
+        viewPortLeft += deltaX;
+        viewPortRight += deltaX;
+    }
+
+    /**
+     * Draws the chart as it was drawn before masking by clip rect.
+     *
+     * @param canvas
+     *            canvas of the chart size
+     */
+    void draw(Canvas canvas) {
+        drawVerticalGrid(canvas);
+        drawHorizontalGrid(canvas);
+        drawLine(canvas);
+        drawPoints(canvas);
+        drawVerticalValues(canvas);
+        drawHorizontalValues(canvas);
+    }
+
+    private void drawLine(Canvas canvas) {
+        Path pathCopy = new Path(filledPath);
+        matrix.reset();
+        matrix.setScale(scaleX, -scaleY);
+        pathCopy.transform(matrix);
+        matrix.reset();
+        matrix.setTranslate(-viewPortLeft * scaleX + viewPortMarginLeft, viewPortTop * scaleY);
+        pathCopy.transform(matrix);
+        filledPaint.setShader(cropViewPortShader);
+        canvas.drawPath(pathCopy, filledPaint);
+
+        pathCopy = new Path(path);
+        matrix.reset();
+        matrix.setScale(scaleX, -scaleY);
+        pathCopy.transform(matrix);
+        matrix.reset();
+        matrix.setTranslate(-viewPortLeft * scaleX + viewPortMarginLeft, viewPortTop * scaleY);
+        pathCopy.transform(matrix);
+        linePaint.setShader(cropViewPortShader);
+        canvas.drawPath(pathCopy, linePaint);
+    }
+
+    private void drawPoints(Canvas canvas) {
+        float extent = pointRadius + pointStrokePaint.getStrokeWidth();
+        for (int i = 0; i < xs.length; i++) {
+            float x = xs[i] * scaleX - viewPortLeft * scaleX + viewPortMarginLeft;
+            float y = ys[i] * (-scaleY) + viewPortTop * scaleY;
+            if (x + extent > viewPortMarginLeft && x - extent < width && y + extent > 0
+                && y - extent < height - viewPortMarginBottom) {
+                pointFillPaint.setShader(cropViewPortShader);
+                pointStrokePaint.setShader(cropViewPortShader);
+                canvas.drawCircle(x, y, pointRadius, pointFillPaint);
+                canvas.drawCircle(x, y, pointRadius, pointStrokePaint);
+            }
+        }
+    }
+
+    private void drawVerticalGrid(Canvas canvas) {
+        int firstLeftLineX = (((int) viewPortLeft) / stepHor - 1) * stepHor;
+        float subStep = (float) stepHor / (horSubLinesCount + 1);
+        mainGridPaint.setShader(cropViewPortShader);
+        subGridPaint.setShader(cropViewPortShader);
+        for (int x = firstLeftLineX; x < viewPortRight; x += stepHor) {
+            canvas.drawLine((x - viewPortLeft) * scaleX + viewPortMarginLeft,
+                            0,
+                            (x - viewPortLeft) * scaleX + viewPortMarginLeft,
+                            height - viewPortMarginBottom,
+                            mainGridPaint);
+            for (int i = 1; i <= horSubLinesCount; i++) {
+                canvas.drawLine((x + i * subStep - viewPortLeft) * scaleX + viewPortMarginLeft,
+                                0,
+                                (x + i * subStep - viewPortLeft) * scaleX + viewPortMarginLeft,
+                                height - viewPortMarginBottom,
+                                subGridPaint);
+            }
+        }
+    }
+
+    private void drawHorizontalGrid(Canvas canvas) {
+        int firstHorLineY = (((int) viewPortBottom) / stepVer) * stepVer;
+        float subStep = (float) stepVer / (verSubLinesCount + 1);
+        mainGridPaint.setShader(cropViewPortShader);
+        subGridPaint.setShader(cropViewPortShader);
+        for (int y = firstHorLineY; y < viewPortTop; y += stepVer) {
+            float lineY = height - viewPortMarginBottom - (y - viewPortBottom) * scaleY;
+            canvas.drawLine(viewPortMarginLeft, lineY, width, lineY, mainGridPaint);
+            for (int i = 1; i <= verSubLinesCount; i++) {
+                float subY = height - viewPortMarginBottom - (y - viewPortBottom + i * subStep) * scaleY;
+                canvas.drawLine(viewPortMarginLeft, subY, width, subY, subGridPaint);
+            }
+        }
+    }
+
+    private void drawHorizontalValues(Canvas canvas) {
+        int first = ((int) ((viewPortLeft - viewPortMarginLeft / scaleX) / stepHor) - 1) * stepHor;
+        int last = (int) viewPortRight + stepHor;
+        horValuesPaint.setShader(cropHorValuesShader);
+        horValuesPaint.setTextAlign(Align.CENTER);
+        for (int x = first; x <= last; x += stepHor) {
+            canvas.drawText(String.valueOf(x),
+                            (x - viewPortLeft) * scaleX + viewPortMarginLeft,
+                            height - 1,
+                            horValuesPaint);
+        }
+    }
+
+    private void drawVerticalValues(Canvas canvas) {
+        int first = ((int) (viewPortBottom - viewPortMarginBottom / scaleY) / stepVer - 1) * stepVer;
+        int last = (int) viewPortTop + stepVer;
+        verValuesPaint.setShader(cropVerValuesShader);
+        verValuesPaint.setTextAlign(Align.LEFT);
+        for (int y = first; y < last; y += stepVer) {
+            canvas.drawText(String.valueOf(y),
+                            0,
+                            (height - viewPortMarginBottom) - (y - viewPortBottom) * scaleY - verValuesPaint.descent(),
+                            verValuesPaint);
+        }
+    }
+}
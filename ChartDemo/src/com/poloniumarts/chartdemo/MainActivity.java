@@ -134,6 +134,7 @@ public class MainActivity extends FragmentActivity implements OnFragmentInteract
             addItem("Marked points", 0xff33b5e5, 0, MarkedPointsChartFragment.newInstance("Marked points"));
             addItem("Smooth lines", 0xff33b5e5, 0, SmoothLinesChartFragment.newInstance("Smooth lines"));
             addItem("Custom grid", 0xff33b5e5, 0, CustomGridFragment.newInstance("Custom grid"));
+            addItem("Masking benchmark", 0xff33b5e5, 0, MaskingBenchmarkFragment.newInstance("Masking benchmark"));
             
             setSelected(1);
         }
@@ -0,0 +1,191 @@
+package com.poloniumarts.chartdemo;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import com.polonium.linechart.Line;
+import com.polonium.linechart.LineChartView;
+import com.polonium.linechart.LinePoint.Type;
+import com.polonium.linechart.PointStyle;
+import com.polonium.linechart.TextAlign;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/**
+ * Dashboard of 20 charts drawn offscreen while moving, once with ViewPort masking by clip rect and once with frozen
+ * {@link LegacyMaskedChart} masking by BitmapShaders. Time of one dashboard frame is measured on a background thread.
+ */
+public class MaskingBenchmarkFragment extends Fragment {
+
+    private static final int CHARTS_COUNT = 20;
+    private static final int FRAMES_COUNT = 60;
+    private static final int POINTS_COUNT = 2000;
+
+    private String title;
+    private TextView description;
+
+    public static MaskingBenchmarkFragment newInstance(String title) {
+        MaskingBenchmarkFragment fragment = new MaskingBenchmarkFragment();
+        fragment.title = title;
+        return fragment;
+    }
+
+    public MaskingBenchmarkFragment() {
+        // Required empty public constructor
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        getActivity().getActionBar().setTitle(title);
+        View view = inflater.inflate(R.layout.fragment_main, container, false);
+        LineChartView chart = (LineChartView) view.findViewById(R.id.chart);
+        chart.addLine(createLine(getActivity(), createIndexes(), createValues()));
+        description = (TextView) view.findViewById(R.id.description);
+        description.setText(R.string.description_benchmark_running);
+        startBenchmark();
+        return view;
+    }
+
+    private void startBenchmark() {
+        final Context context = getActivity().getApplicationContext();
+        final float density = getResources().getDisplayMetrics().density;
+        final int width = getResources().getDisplayMetrics().widthPixels / 2;
+        final int height = (int) (120 * density);
+        final String header = getString(R.string.description_benchmark, CHARTS_COUNT, width, height);
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                final String result = header + runBenchmark(context, width, height, density);
+                description.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (getActivity() != null) description.setText(result);
+                    }
+                });
+            }
+        }, "MaskingBenchmark").start();
+    }
+
+    private static String runBenchmark(Context context, int width, int height, float density) {
+        int valuesMargin = (int) (20 * density);
+        ArrayList<LineChartView> charts = new ArrayList<LineChartView>();
+        ArrayList<LegacyMaskedChart> legacyCharts = new ArrayList<LegacyMaskedChart>();
+        for (int i = 0; i < CHARTS_COUNT; i++) {
+            float[] x = createIndexes();
+            float[] y = createValues();
+            charts.add(createChart(context, width, height, valuesMargin, density, x, y));
+            legacyCharts.add(new LegacyMaskedChart(width, height, valuesMargin, 10 * density, x, y));
+        }
+        Bitmap frame = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+        Canvas canvas = new Canvas(frame);
+
+        // first frame builds caches of the charts
+        for (LineChartView chart : charts) {
+            chart.draw(canvas);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            for (LineChartView chart : charts) {
+                chart.moveViewPort(1, 0);
+                chart.draw(canvas);
+            }
+        }
+        long clipTime = System.nanoTime() - start;
+
+        for (LegacyMaskedChart chart : legacyCharts) {
+            chart.draw(canvas);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            for (LegacyMaskedChart chart : legacyCharts) {
+                chart.moveViewPort(1);
+                chart.draw(canvas);
+            }
+        }
+        long shaderTime = System.nanoTime() - start;
+        frame.recycle();
+        return String.format(Locale.US,
+                             "\nclipRect: %.2f ms per frame\nBitmapShader: %.2f ms per frame",
+                             clipTime / 1e6 / FRAMES_COUNT,
+                             shaderTime / 1e6 / FRAMES_COUNT);
+    }
+
+    private static float[] createIndexes() {
+        float[] x = new float[POINTS_COUNT];
+        for (int i = 0; i < POINTS_COUNT; i++) {
+            x[i] = i;
+        }
+        return x;
+    }
+
+    private static float[] createValues() {
+        float[] y = new float[POINTS_COUNT];
+        float value = 50;
+        for (int i = 0; i < POINTS_COUNT; i++) {
+            value = Math.max(0, Math.min(100, value + (float) (Math.random() - 0.5) * 10));
+            y[i] = value;
+        }
+        return y;
+    }
+
+    private static LineChartView createChart(Context context, int width, int height, int valuesMargin, float density,
+                                             float[] x, float[] y) {
+        LineChartView chart = new LineChartView(context);
+        chart.setViewPortMargins(valuesMargin, valuesMargin, 0, 0);
+        chart.setHorValuesMargins(0, 0, 0, 0);
+        chart.setVerValuesMargins(0, valuesMargin, 0, 0);
+        chart.setViewPort(0, 0, 100, 100);
+        chart.setGridSize(10, 4, 20, 4);
+        chart.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                      MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        chart.layout(0, 0, width, height);
+
+        Paint horValues = createPaint(0xff444444);
+        horValues.setTextSize(10 * density);
+        Paint verValues = createPaint(0xff444444);
+        verValues.setTextSize(10 * density);
+        chart.setMainValuesStyle(horValues, verValues);
+
+        Paint mainGrid = createPaint(0xaa888888);
+        Paint subGrid = createPaint(0x44888888);
+        chart.setVerticalGridStyle(mainGrid, subGrid);
+        chart.setHorizontalGridStyle(mainGrid, subGrid);
+        chart.addLine(createLine(context, x, y));
+        return chart;
+    }
+
+    private static Line createLine(Context context, float[] x, float[] y) {
+        Line line = new Line(context).setPoints(x, y, 0, POINTS_COUNT)
+                                     .setFilled(true)
+                                     .setColor(0xff33b5e5)
+                                     .setFilledColor(0x4433b5e5);
+
+        Paint stroke = createPaint(0xff33b5e5);
+        stroke.setStyle(Paint.Style.STROKE);
+        stroke.setStrokeWidth(2);
+        Paint fill = createPaint(0xffffffff);
+        Paint text = createPaint(0xff444444);
+        line.setPointStyle(new PointStyle(Type.CIRCLE, 3, stroke, fill, text, TextAlign.TOP));
+        return line;
+    }
+
+    private static Paint createPaint(int color) {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setColor(color);
+        return paint;
+    }
+}
@@ -0,0 +1,38 @@
+package com.polonium.linechart;
+
+/**
+ * Source of points of a {@link Line} too long to be kept in memory. The line asks it only for parts of the chart
+ * around the ViewPort, at resolution of the current zoom. Methods are called on a background thread; loads no longer
+ * needed are cancelled by interrupting the thread, so long queries should check {@link Thread#isInterrupted()}.
+ *
+ * @see Line#setDataSource
+ * @see CursorDataSource
+ */
+public interface ChartDataSource {
+
+    /**
+     * @return minimal horizontal coordinate of all points
+     */
+    float getMinX();
+
+    /**
+     * @return maximal horizontal coordinate of all points
+     */
+    float getMaxX();
+
+    /**
+     * Loads points in the range reduced to the given count, for example minimum and maximum of equal parts of the
+     * range.
+     *
+     * @param fromX
+     *            minimal horizontal coordinate, inclusive
+     * @param toX
+     *            maximal horizontal coordinate, exclusive
+     * @param xs
+     *            array for horizontal coordinates sorted ascending, its length is maximal count of points
+     * @param ys
+     *            array for vertical coordinates
+     * @return count of loaded points
+     */
+    int load(float fromX, float toX, float[] xs, float[] ys);
+}
@@ -1,13 +1,17 @@
 package com.polonium.linechart;
 
+import java.util.Arrays;
+
 import android.content.Context;
+import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.util.SparseArray;
 import android.util.TypedValue;
 /**
  * Class for holding values to draw grid by {@link com.polonium.linechart.LineChartView LineChartView}
  */
 class ChartGrid {
+    static final int LINES_KEY_SIZE = 18;
+
     int stepHor = 10;
     int stepVer = 10;
 
@@ -42,10 +46,19 @@ class ChartGrid {
     int horValuesAlign = TextAlign.HORIZONTAL_CENTER | TextAlign.BOTTOM;
     int verValuesAlign = TextAlign.LEFT | TextAlign.BOTTOM;
 
-    SparseArray<String> horValuesText = null;
-    SparseArray<String> verValuesText = null;
+    final LabelCache horLabels = new LabelCache();
+    final LabelCache verLabels = new LabelCache();
+
+    final Lines mainVerLines = new Lines();
+    final Lines subVerLines = new Lines();
+    final Lines mainHorLines = new Lines();
+    final Lines subHorLines = new Lines();
+    /** Every value grid lines depend on, filled before {@link #isLinesChanged()} */
+    final float[] newLinesKey = new float[LINES_KEY_SIZE];
+    private final float[] mLinesKey = new float[LINES_KEY_SIZE];
 
     public ChartGrid(Context context) {
+        Arrays.fill(mLinesKey, Float.NaN);
         mainVerLinesPaint.setColor(0xaa888888);
         subVerLinesPaint.setColor(0x44888888);
         mainHorLinesPaint.setColor(0xaa888888);
@@ -64,4 +77,41 @@ class ChartGrid {
                                                                  context.getResources().getDisplayMetrics()));
     }
 
+    /**
+     * Checks if grid lines were built for values of {@link #newLinesKey} and remembers them otherwise.
+     * 
+     * @return true if lines should be built again
+     */
+    boolean isLinesChanged() {
+        if (Arrays.equals(mLinesKey, newLinesKey)) return false;
+        System.arraycopy(newLinesKey, 0, mLinesKey, 0, LINES_KEY_SIZE);
+        return true;
+    }
+
+    /**
+     * Reusable buffer of line segments drawn with one {@link android.graphics.Canvas#drawLines(float[], int, int, Paint)
+     * drawLines} call.
+     */
+    static final class Lines {
+        private float[] mPoints = new float[64];
+        private int mCount = 0;
+
+        void clear() {
+            mCount = 0;
+        }
+
+        void add(float startX, float startY, float stopX, float stopY) {
+            if (mCount + 4 > mPoints.length) {
+                mPoints = Arrays.copyOf(mPoints, mPoints.length * 2);
+            }
+            mPoints[mCount++] = startX;
+            mPoints[mCount++] = startY;
+            mPoints[mCount++] = stopX;
+            mPoints[mCount++] = stopY;
+        }
+
+        void draw(Canvas canvas, Paint paint) {
+            if (mCount > 0) canvas.drawLines(mPoints, 0, mCount, paint);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package com.polonium.linechart;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * {@link ChartDataSource} reading points from a table of local SQLite database. Ranges are reduced by the query:
+ * points are grouped into equal buckets and each bucket gives its rows with minimal and maximal value in order of
+ * horizontal coordinate, so cursor never holds more rows than needed. Index on the horizontal column is recommended.
+ */
+public class CursorDataSource implements ChartDataSource {
+
+    private final SQLiteDatabase mDatabase;
+    private final String mBoundsQuery;
+    private final String mRangeQuery;
+    private float mMinX = 0;
+    private float mMaxX = 0;
+    private boolean isBoundsLoaded = false;
+
+    /**
+     * Instantiates a new cursor data source.
+     *
+     * @param database
+     *            opened database
+     * @param table
+     *            name of the table
+     * @param xColumn
+     *            name of column with horizontal coordinates
+     * @param yColumn
+     *            name of column with vertical coordinates
+     */
+    public CursorDataSource(SQLiteDatabase database, String table, String xColumn, String yColumn) {
+        mDatabase = database;
+        mBoundsQuery = "SELECT MIN(" + xColumn + "), MAX(" + xColumn + ") FROM " + table;
+        // with single MIN or MAX aggregate SQLite takes bare columns from the row holding it, so points are real rows
+        String bucket = "CAST((" + xColumn + " - ?1) * ?3 AS INTEGER)";
+        String range = " FROM " + table + " WHERE " + xColumn + " >= ?1 AND " + xColumn + " < ?2 GROUP BY 1";
+        mRangeQuery = "SELECT " + bucket + ", " + xColumn + ", MIN(" + yColumn + ")" + range + " UNION ALL SELECT "
+                      + bucket + ", " + xColumn + ", MAX(" + yColumn + ")" + range + " ORDER BY 1, 2";
+    }
+
+    @Override
+    public float getMinX() {
+        loadBounds();
+        return mMinX;
+    }
+
+    @Override
+    public float getMaxX() {
+        loadBounds();
+        return mMaxX;
+    }
+
+    private synchronized void loadBounds() {
+        if (isBoundsLoaded) return;
+        Cursor cursor = mDatabase.rawQuery(mBoundsQuery, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                mMinX = cursor.getFloat(0);
+                mMaxX = cursor.getFloat(1);
+            }
+        } finally {
+            cursor.close();
+        }
+        isBoundsLoaded = true;
+    }
+
+    /**
+     * Drops cached bounds, call it after rows were added or removed.
+     */
+    public synchronized void invalidateBounds() {
+        isBoundsLoaded = false;
+    }
+
+    @Override
+    public int load(float fromX, float toX, float[] xs, float[] ys) {
+        // each bucket gives two points
+        int buckets = xs.length / 2;
+        if (buckets == 0 || toX <= fromX) return 0;
+        double scale = buckets / ((double) toX - fromX);
+        Cursor cursor = mDatabase.rawQuery(mRangeQuery, new String[] { Float.toString(fromX), Float.toString(toX),
+                Double.toString(scale) });
+        try {
+            int count = 0;
+            while (count < xs.length && cursor.moveToNext()) {
+                if (Thread.currentThread().isInterrupted()) return 0;
+                float x = cursor.getFloat(1);
+                float y = cursor.getFloat(2);
+                // minimum and maximum of bucket may be the same row
+                if (count > 0 && xs[count - 1] == x && ys[count - 1] == y) continue;
+                xs[count] = x;
+                ys[count++] = y;
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.polonium.linechart;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * Loads points of a {@link Line} from {@link ChartDataSource} by chunks. Chunk covers power of two units of horizontal
+ * coordinate chosen for the zoom, so it is {@link #CHUNK_PIXELS} to twice as many pixels wide and holds up to two
+ * points per pixel. Chunks of the ViewPort, one on each side and {@link #PREFETCH_CHUNKS} more in the direction of
+ * movement are loaded on shared background threads; loads no longer needed are cancelled. Loaded chunks are kept in
+ * LRU order under a byte budget, chunks of coarser zoom are shown while finer ones are loading. Must be used on a
+ * thread with {@link Looper}, loads are delivered to it.
+ */
+final class DataPager {
+
+    static final int CHUNK_PIXELS = 256;
+    static final int PREFETCH_CHUNKS = 2;
+    /** Coarser zooms looked for while a chunk is loading. */
+    private static final int MAX_FALLBACK_LEVELS = 4;
+
+    private static final ExecutorService sExecutor = createExecutor();
+
+    private final Line mLine;
+    private final ChartDataSource mSource;
+    private final LinkedHashMap<Key, Chunk> mChunks = new LinkedHashMap<Key, Chunk>(16, 0.75f, true);
+    private final HashMap<Key, Future<?>> mLoading = new HashMap<Key, Future<?>>();
+    private final ArrayList<Key> mWanted = new ArrayList<Key>();
+    private ArrayList<Part> mShown = new ArrayList<Part>();
+    private ArrayList<Part> mComposed = new ArrayList<Part>();
+    private final Key mProbe = new Key();
+    private Handler mHandler;
+    private Future<?> mBoundsLoading;
+    private float mMinX = Float.NaN;
+    private float mMaxX = Float.NaN;
+    private long mBudget = 4L * 1024 * 1024;
+    private long mBytes = 0;
+    private int mLevel = Integer.MIN_VALUE;
+    private long mFirst = 0;
+    private int mDirection = 0;
+    private float[] mXs = new float[0];
+    private float[] mYs = new float[0];
+    private boolean isReleased = false;
+
+    /**
+     * Position of chunk: zoom level and index. Chunk covers [index * 2^level, (index + 1) * 2^level).
+     */
+    private static final class Key {
+        int level;
+        long index;
+
+        Key set(int level, long index) {
+            this.level = level;
+            this.index = index;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return key.level == level && key.index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * level + (int) (index ^ (index >>> 32));
+        }
+    }
+
+    private static final class Chunk {
+        final Key key;
+        final float[] xs;
+        final float[] ys;
+
+        Chunk(Key key, float[] xs, float[] ys) {
+            this.key = key;
+            this.xs = xs;
+            this.ys = ys;
+        }
+
+        long getBytes() {
+            return 8L * xs.length;
+        }
+    }
+
+    /**
+     * Chunk shown for the run of chunk indexes of the current zoom: the chunk itself or coarser one covering missing
+     * chunks. Parts are reused between compositions.
+     */
+    private static final class Part {
+        Chunk chunk;
+        long first;
+        long last;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Part)) return false;
+            Part part = (Part) o;
+            return part.chunk == chunk && part.first == first && part.last == last;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * chunk.hashCode() + (int) (first ^ (first >>> 32));
+        }
+    }
+
+    DataPager(Line line, ChartDataSource source) {
+        mLine = line;
+        mSource = source;
+    }
+
+    private static ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(2, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LineChartData");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    ChartDataSource getSource() {
+        return mSource;
+    }
+
+    /**
+     * @return true if horizontal range of the source is known
+     */
+    boolean hasBounds() {
+        return !Float.isNaN(mMinX);
+    }
+
+    float getMinX() {
+        return mMinX;
+    }
+
+    float getMaxX() {
+        return mMaxX;
+    }
+
+    /**
+     * Sets memory limit for loaded points. Chunks needed for the ViewPort are kept even if they don't fit.
+     *
+     * @param bytes
+     *            budget in bytes
+     */
+    void setBudget(long bytes) {
+        mBudget = bytes;
+        trim();
+    }
+
+    /**
+     * @return bytes used by loaded points
+     */
+    long getMemoryUsage() {
+        return mBytes;
+    }
+
+    /**
+     * Loads chunks around the range and shows loaded ones in the line.
+     *
+     * @param fromX
+     *            horizontal coordinate at the left edge of the view
+     * @param toX
+     *            horizontal coordinate at the right edge of the view
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     */
+    void update(float fromX, float toX, float scaleX) {
+        if (isReleased || scaleX <= 0 || toX <= fromX) return;
+        if (!hasBounds()) {
+            loadBounds();
+            return;
+        }
+        int level = (int) Math.ceil(Math.log(CHUNK_PIXELS / (double) scaleX) / Math.log(2));
+        double width = Math.pow(2, level);
+        long first = (long) Math.floor(fromX / width);
+        long last = (long) Math.floor(toX / width);
+        // direction is kept until movement reverses, zoom resets it
+        if (level != mLevel) mDirection = 0;
+        else if (first != mFirst) mDirection = first > mFirst ? 1 : -1;
+        mLevel = level;
+        mFirst = first;
+        long sourceFirst = (long) Math.floor(mMinX / width);
+        long sourceLast = (long) Math.floor(mMaxX / width);
+        long shownFirst = Math.max(first - 1, sourceFirst);
+        long shownLast = Math.min(last + 1, sourceLast);
+        long wantedFirst = Math.max(first - 1 - (mDirection < 0 ? PREFETCH_CHUNKS : 0), sourceFirst);
+        long wantedLast = Math.min(last + 1 + (mDirection > 0 ? PREFETCH_CHUNKS : 0), sourceLast);
+
+        mWanted.clear();
+        for (long i = wantedFirst; i <= wantedLast; i++) {
+            mWanted.add(new Key().set(level, i));
+        }
+        cancelUnwanted();
+        // visible chunks are loaded first
+        for (long i = shownFirst; i <= shownLast; i++) {
+            load(level, i, width);
+        }
+        for (long i = wantedFirst; i <= wantedLast; i++) {
+            if (i < shownFirst || i > shownLast) load(level, i, width);
+        }
+        compose(level, shownFirst, shownLast);
+    }
+
+    private void loadBounds() {
+        if (mBoundsLoading != null) return;
+        final Handler handler = getHandler();
+        mBoundsLoading = sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final float minX = mSource.getMinX();
+                final float maxX = mSource.getMaxX();
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isReleased) return;
+                        mBoundsLoading = null;
+                        mMinX = minX;
+                        mMaxX = maxX;
+                        // view limits depend on the bounds
+                        mLine.notifyDataChanged(minX, maxX);
+                    }
+                });
+            }
+        });
+    }
+
+    private void cancelUnwanted() {
+        Iterator<Map.Entry<Key, Future<?>>> iterator = mLoading.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Future<?>> entry = iterator.next();
+            if (!mWanted.contains(entry.getKey())) {
+                entry.getValue().cancel(true);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void load(int level, long index, final double width) {
+        mProbe.set(level, index);
+        if (mChunks.containsKey(mProbe) || mLoading.containsKey(mProbe)) return;
+        final Key key = new Key().set(level, index);
+        final Handler handler = getHandler();
+        mLoading.put(key, sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                float[] xs = new float[4 * CHUNK_PIXELS];
+                float[] ys = new float[4 * CHUNK_PIXELS];
+                int count = mSource.load((float) (key.index * width), (float) ((key.index + 1) * width), xs, ys);
+                if (Thread.currentThread().isInterrupted()) return;
+                final Chunk chunk = new Chunk(key, trim(xs, count), trim(ys, count));
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(chunk);
+                    }
+                });
+            }
+        }));
+    }
+
+    private static float[] trim(float[] values, int count) {
+        float[] result = new float[count];
+        System.arraycopy(values, 0, result, 0, count);
+        return result;
+    }
+
+    private void onLoaded(Chunk chunk) {
+        // load was cancelled while result was posted
+        if (isReleased || mLoading.remove(chunk.key) == null) return;
+        mChunks.put(chunk.key, chunk);
+        mBytes += chunk.getBytes();
+        trim();
+        if (chunk.key.level == mLevel) mLine.notifyDataChanged(mMinX, mMaxX);
+    }
+
+    /**
+     * Evicts least recently used chunks exceeding the budget.
+     */
+    private void trim() {
+        Iterator<Chunk> iterator = mChunks.values().iterator();
+        while (mBytes > mBudget && iterator.hasNext()) {
+            Chunk chunk = iterator.next();
+            if (mWanted.contains(chunk.key) || isShown(chunk)) continue;
+            iterator.remove();
+            mBytes -= chunk.getBytes();
+        }
+    }
+
+    private boolean isShown(Chunk chunk) {
+        for (int i = 0; i < mShown.size(); i++) {
+            if (mShown.get(i).chunk == chunk) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets points of the line to loaded chunks of the range if they differ from shown ones.
+     */
+    private void compose(int level, long first, long last) {
+        int count = 0;
+        for (long i = first; i <= last; i++) {
+            Chunk chunk = mChunks.get(mProbe.set(level, i));
+            // coarser chunk is shown only over missing chunks, so it doesn't overlap loaded ones
+            if (chunk == null) chunk = findFallback(level, i);
+            if (chunk == null) continue;
+            if (count > 0) {
+                Part previous = mComposed.get(count - 1);
+                if (previous.chunk == chunk && previous.last == i - 1) {
+                    previous.last = i;
+                    continue;
+                }
+            }
+            if (count == mComposed.size()) mComposed.add(new Part());
+            Part part = mComposed.get(count++);
+            part.chunk = chunk;
+            part.first = i;
+            part.last = i;
+        }
+        while (mComposed.size() > count) {
+            mComposed.remove(mComposed.size() - 1);
+        }
+        if (mComposed.equals(mShown)) return;
+        ArrayList<Part> shown = mShown;
+        mShown = mComposed;
+        mComposed = shown;
+
+        int size = 0;
+        for (Part part : mShown) {
+            size += part.chunk.xs.length;
+        }
+        if (mXs.length < size) {
+            mXs = new float[size];
+            mYs = new float[size];
+        }
+        double width = Math.pow(2, level);
+        size = 0;
+        for (Part part : mShown) {
+            float fromX = (float) (part.first * width);
+            float toX = (float) ((part.last + 1) * width);
+            float[] xs = part.chunk.xs;
+            for (int i = 0; i < xs.length; i++) {
+                if (xs[i] < fromX || xs[i] >= toX) continue;
+                mXs[size] = xs[i];
+                mYs[size++] = part.chunk.ys[i];
+            }
+        }
+        mLine.setPagedPoints(mXs, mYs, size);
+    }
+
+    private Chunk findFallback(int level, long index) {
+        for (int i = 1; i <= MAX_FALLBACK_LEVELS; i++) {
+            Chunk chunk = mChunks.get(mProbe.set(level + i, index >> i));
+            if (chunk != null) return chunk;
+        }
+        return null;
+    }
+
+    private Handler getHandler() {
+        Looper looper = Looper.myLooper();
+        if (looper == null) looper = Looper.getMainLooper();
+        if (mHandler == null || mHandler.getLooper() != looper) mHandler = new Handler(looper);
+        return mHandler;
+    }
+
+    /**
+     * Cancels all loads, loaded chunks are kept. Loads are started again by next update.
+     */
+    void cancel() {
+        for (Future<?> future : mLoading.values()) {
+            future.cancel(true);
+        }
+        if (mBoundsLoading != null) mBoundsLoading.cancel(true);
+        mBoundsLoading = null;
+        mLoading.clear();
+    }
+
+    /**
+     * Cancels all loads and drops loaded chunks.
+     */
+    void release() {
+        isReleased = true;
+        cancel();
+        mChunks.clear();
+        mShown.clear();
+        mBytes = 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.polonium.linechart;
+
+/**
+ * Level of detail algorithms reducing count of line vertices before drawing. Buckets are aligned to fixed steps of
+ * horizontal coordinate, so result doesn't change while ViewPort is moving at the same scale.
+ */
+final class Decimator {
+
+    private Decimator() {
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets decimation. First and last points are always kept, from each other bucket the
+     * point forming the largest triangle with previous selected point and average of the next bucket is taken. Buckets
+     * are aligned to multiples of their width.
+     *
+     * @param line
+     *            source line with points sorted by horizontal coordinate
+     * @param from
+     *            index of the first point
+     * @param to
+     *            index after the last point
+     * @param bucketWidth
+     *            width of bucket in chart coordinates
+     * @param outX
+     *            horizontal coordinates of result, must fit one point per bucket plus two
+     * @param outY
+     *            vertical coordinates of result
+     * @return count of result points
+     */
+    static int lttb(Line line, int from, int to, double bucketWidth, float[] outX, float[] outY) {
+        if (to <= from) return 0;
+        int n = to - 1;
+        int count = 0;
+        outX[count] = line.getX(from);
+        outY[count++] = line.getY(from);
+        if (n == from) return count;
+
+        float aX = line.getX(from);
+        float aY = line.getY(from);
+        int start = from + 1;
+        int end = bucketEnd(line, start, n, bucketWidth);
+        while (start < n) {
+            // average of the next bucket, last point if there is no one
+            int nextEnd = end;
+            float avgX = line.getX(n);
+            float avgY = line.getY(n);
+            if (end < n) {
+                nextEnd = bucketEnd(line, end, n, bucketWidth);
+                double sumX = 0;
+                double sumY = 0;
+                for (int i = end; i < nextEnd; i++) {
+                    sumX += line.getX(i);
+                    sumY += line.getY(i);
+                }
+                avgX = (float) (sumX / (nextEnd - end));
+                avgY = (float) (sumY / (nextEnd - end));
+            }
+
+            int selected = start;
+            double maxArea = -1;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((aX - avgX) * (line.getY(i) - aY) - (aX - line.getX(i)) * (avgY - aY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    selected = i;
+                }
+            }
+            aX = line.getX(selected);
+            aY = line.getY(selected);
+            outX[count] = aX;
+            outY[count++] = aY;
+
+            start = end;
+            end = nextEnd;
+        }
+        outX[count] = line.getX(n);
+        outY[count++] = line.getY(n);
+        return count;
+    }
+
+    /**
+     * M4 aggregation: keeps first, last, minimal and maximal point of each pixel column in original order. Rasterized
+     * result is the same as for all points, but has at most four vertices per column.
+     *
+     * @param line
+     *            source line with points sorted by horizontal coordinate
+     * @param pyramid
+     *            valid pyramid of the line or null to aggregate points one by one
+     * @param level
+     *            level of the pyramid with buckets not wider than pixel column
+     * @param from
+     *            index of the first point
+     * @param to
+     *            index after the last point
+     * @param originX
+     *            horizontal coordinate of the left edge of pixel column 0
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param outX
+     *            horizontal coordinates of result, must fit four points per column
+     * @param outY
+     *            vertical coordinates of result
+     * @return count of result points
+     */
+    static int m4(Line line, MinMaxPyramid pyramid, int level, int from, int to, double originX, double scaleX,
+                  float[] outX, float[] outY) {
+        int bucketSize = pyramid == null ? 1 : 1 << level;
+        int count = 0;
+        long column = 0;
+        int first = -1, last = -1, min = -1, max = -1;
+        int i = from;
+        while (i < to) {
+            // whole bucket of the pyramid if it lies in one column, otherwise single point
+            int unitLast = i, unitMin = i, unitMax = i;
+            long unitColumn = (long) Math.floor((line.getX(i) - originX) * scaleX);
+            if (bucketSize > 1 && pyramid.isBucketStart(level, i) && i + bucketSize <= to
+                && (long) Math.floor((line.getX(i + bucketSize - 1) - originX) * scaleX) == unitColumn) {
+                unitLast = i + bucketSize - 1;
+                unitMin = pyramid.getMinIndex(level, i);
+                unitMax = pyramid.getMaxIndex(level, i);
+            }
+            if (first < 0 || unitColumn != column) {
+                if (first >= 0) count = putColumn(line, first, last, min, max, outX, outY, count);
+                column = unitColumn;
+                first = i;
+                min = unitMin;
+                max = unitMax;
+            } else {
+                if (line.getY(unitMin) < line.getY(min)) min = unitMin;
+                if (line.getY(unitMax) > line.getY(max)) max = unitMax;
+            }
+            last = unitLast;
+            i = unitLast + 1;
+        }
+        if (first >= 0) count = putColumn(line, first, last, min, max, outX, outY, count);
+        return count;
+    }
+
+    private static int putColumn(Line line, int first, int last, int min, int max, float[] outX, float[] outY,
+                                 int count) {
+        count = put(line, first, outX, outY, count);
+        if (min < max) {
+            if (min != first) count = put(line, min, outX, outY, count);
+            if (max != last) count = put(line, max, outX, outY, count);
+        } else {
+            if (max != first) count = put(line, max, outX, outY, count);
+            if (min != last && min != max) count = put(line, min, outX, outY, count);
+        }
+        if (last != first) count = put(line, last, outX, outY, count);
+        return count;
+    }
+
+    private static int put(Line line, int index, float[] outX, float[] outY, int count) {
+        outX[count] = line.getX(index);
+        outY[count] = line.getY(index);
+        return count + 1;
+    }
+
+    /**
+     * @return index after the last point of the bucket starting at <i>start</i>, not greater than <i>limit</i>
+     */
+    private static int bucketEnd(Line line, int start, int limit, double bucketWidth) {
+        long bucket = (long) Math.floor(line.getX(start) / bucketWidth);
+        int end = start + 1;
+        while (end < limit && (long) Math.floor(line.getX(end) / bucketWidth) == bucket) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return count of aligned buckets covering points from <i>from</i> to <i>to</i> exclusive
+     */
+    static long bucketsCount(Line line, int from, int to, double bucketWidth) {
+        if (to <= from) return 0;
+        return (long) Math.floor(line.getX(to - 1) / bucketWidth) - (long) Math.floor(line.getX(from) / bucketWidth) + 1;
+    }
+}
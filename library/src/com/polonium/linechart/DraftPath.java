@@ -0,0 +1,93 @@
+package com.polonium.linechart;
+
+import android.graphics.Path;
+
+/**
+ * Cheap version of {@link Line} path drawn during gestures: {@link Decimator#m4 M4} envelope of visible points with
+ * pixel columns {@link #COLUMN_WIDTH} pixels wide. It is kept apart from the line's own level of detail, so switching
+ * quality doesn't rebuild it.
+ */
+final class DraftPath {
+
+    static final int COLUMN_WIDTH = 2;
+
+    private float[] mXs = new float[0];
+    private float[] mYs = new float[0];
+    private int mSize = 0;
+    private final Path mPath = new Path();
+    private final Path mFilledPath = new Path();
+    private boolean isFilledPathValid = false;
+    private final ScreenPath mScreenPath = new ScreenPath();
+    private final ScreenPath mScreenFilledPath = new ScreenPath();
+    private int mVersion = 0;
+    private int mModCount = -1;
+    private float mScaleX = Float.NaN;
+    private float mFromX = Float.NaN;
+    private float mToX = Float.NaN;
+
+    /**
+     * Rebuilds the envelope if points or visible range were changed.
+     *
+     * @param line
+     *            source line with points sorted by horizontal coordinate
+     * @param pyramid
+     *            valid pyramid of the line or null
+     * @param modCount
+     *            number changed every time points of the line are changed
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param fromX
+     *            horizontal coordinate at the left edge of the view
+     * @param toX
+     *            horizontal coordinate at the right edge of the view
+     * @return false if visible points are too few to reduce, full path should be drawn
+     */
+    boolean update(Line line, MinMaxPyramid pyramid, int modCount, float scaleX, float fromX, float toX) {
+        if (modCount == mModCount && scaleX == mScaleX && fromX == mFromX && toX == mToX) return mSize > 0;
+        mModCount = modCount;
+        mScaleX = scaleX;
+        mFromX = fromX;
+        mToX = toX;
+        mSize = 0;
+        isFilledPathValid = false;
+        int from = Math.max(line.lowerBound(fromX) - 1, 0);
+        int to = Math.min(line.upperBound(toX) + 1, line.getPointsCount());
+        double columnScale = (double) scaleX / COLUMN_WIDTH;
+        long columns = (long) Math.ceil(((double) toX - fromX) * columnScale) + 3;
+        if (to - from <= 4 * columns) return false;
+        if (mXs.length < 4 * columns) {
+            mXs = new float[(int) (4 * columns)];
+            mYs = new float[(int) (4 * columns)];
+        }
+        int level = pyramid == null ? -1 : pyramid.levelFor((to - from) / (2.0 * columns));
+        mSize = Decimator.m4(line, level >= 0 ? pyramid : null, level, from, to, fromX, columnScale, mXs, mYs);
+        mVersion++;
+        mPath.rewind();
+        if (mSize > 0) mPath.moveTo(mXs[0], mYs[0]);
+        for (int i = 1; i < mSize; i++) {
+            mPath.lineTo(mXs[i], mYs[i]);
+        }
+        return mSize > 0;
+    }
+
+    /**
+     * @return envelope scaled to pixels with chart zero at origin
+     */
+    Path getScreenPath(float scaleX, float scaleY) {
+        return mScreenPath.get(mPath, mVersion, scaleX, scaleY);
+    }
+
+    /**
+     * @return envelope closed by horizontal axis scaled to pixels
+     */
+    Path getScreenFilledPath(float scaleX, float scaleY) {
+        if (!isFilledPathValid) {
+            mFilledPath.set(mPath);
+            mFilledPath.lineTo(mXs[mSize - 1], 0);
+            mFilledPath.lineTo(mXs[0], 0);
+            mFilledPath.close();
+            isFilledPathValid = true;
+        }
+        return mScreenFilledPath.get(mFilledPath, mVersion, scaleX, scaleY);
+    }
+}
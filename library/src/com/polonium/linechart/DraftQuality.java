@@ -0,0 +1,20 @@
+package com.polonium.linechart;
+
+/**
+ * Interface holds flags of simplifications used by {@link com.polonium.linechart.LineChartView LineChartView} while
+ * chart is dragged or flung. Full quality is drawn again when movement stops.
+ */
+public interface DraftQuality {
+    /** Lines are drawn as min/max envelope of visible points. */
+    public final static int DECIMATE_LINES = 0x00000001;
+    /** Grid, lines and markers are drawn without anti-aliasing. */
+    public final static int NO_ANTIALIAS = 0x00000002;
+    /** Texts of points are hidden. */
+    public final static int HIDE_POINT_TEXTS = 0x00000004;
+    /** Additional grid lines are hidden. */
+    public final static int HIDE_SUB_GRID = 0x00000008;
+    /** Markers of points are hidden. */
+    public final static int HIDE_MARKERS = 0x00000010;
+    /** Default set: everything except markers is simplified. */
+    public final static int DEFAULT = DECIMATE_LINES | NO_ANTIALIAS | HIDE_POINT_TEXTS | HIDE_SUB_GRID;
+}
@@ -0,0 +1,173 @@
+package com.polonium.linechart;
+
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.OverScroller;
+
+/**
+ * Inertial movement after fling. Decay is computed by {@link OverScroller} from elapsed time, so distance doesn't
+ * depend on frame rate. Steps are driven by {@link Choreographer} frames (by delayed messages before Android 4.1) and
+ * aren't scheduled when there is no movement.
+ */
+final class FlingEngine {
+
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    /**
+     * Receives movement of each step.
+     */
+    interface Callback {
+
+        /**
+         * @param deltaX
+         *            horizontal movement in pixels since previous step
+         * @param deltaY
+         *            vertical movement in pixels since previous step
+         */
+        void onFlingStep(int deltaX, int deltaY);
+    }
+
+    private final View mView;
+    private final Callback mCallback;
+    private final OverScroller mScrollerX;
+    private final OverScroller mScrollerY;
+    private int mLastX;
+    private int mLastY;
+    private boolean isScheduled = false;
+    private Object mFrameCallback;
+    private final Runnable mStep = new Runnable() {
+        @Override
+        public void run() {
+            step();
+        }
+    };
+
+    FlingEngine(View view, Callback callback) {
+        mView = view;
+        mCallback = callback;
+        Context context = view.getContext();
+        // separate scrollers keep own friction of each axis, both move along their X
+        mScrollerX = new OverScroller(context);
+        mScrollerY = new OverScroller(context);
+    }
+
+    /**
+     * Sets deceleration of each axis, 10 is default friction of scrolling views.
+     */
+    void setFriction(float fx, float fy) {
+        mScrollerX.setFriction(ViewConfiguration.getScrollFriction() * fx / 10);
+        mScrollerY.setFriction(ViewConfiguration.getScrollFriction() * fy / 10);
+    }
+
+    /**
+     * Starts movement, previous one is replaced.
+     *
+     * @param velocityX
+     *            horizontal velocity in pixels per second
+     * @param velocityY
+     *            vertical velocity in pixels per second
+     */
+    void fling(float velocityX, float velocityY) {
+        mLastX = 0;
+        mLastY = 0;
+        mScrollerX.forceFinished(true);
+        mScrollerY.forceFinished(true);
+        if ((int) velocityX != 0) {
+            mScrollerX.fling(0, 0, (int) velocityX, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 0);
+        }
+        if ((int) velocityY != 0) {
+            mScrollerY.fling(0, 0, (int) velocityY, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 0);
+        }
+        schedule();
+    }
+
+    /**
+     * Stops horizontal movement, for example on reaching limits.
+     */
+    void stopX() {
+        mScrollerX.forceFinished(true);
+    }
+
+    /**
+     * Stops vertical movement.
+     */
+    void stopY() {
+        mScrollerY.forceFinished(true);
+    }
+
+    /**
+     * Stops movement and cancels scheduled step.
+     */
+    void stop() {
+        stopX();
+        stopY();
+        if (!isScheduled) return;
+        isScheduled = false;
+        if (mFrameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+        } else {
+            mView.removeCallbacks(mStep);
+        }
+    }
+
+    /**
+     * @return true if horizontal movement isn't finished
+     */
+    boolean isFlingingX() {
+        return !mScrollerX.isFinished();
+    }
+
+    /**
+     * @return true if vertical movement isn't finished
+     */
+    boolean isFlingingY() {
+        return !mScrollerY.isFinished();
+    }
+
+    private void schedule() {
+        if (isScheduled) return;
+        isScheduled = true;
+        if (Build.VERSION.SDK_INT >= 16) {
+            if (mFrameCallback == null) mFrameCallback = new FrameCallback(mStep);
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+        } else {
+            mView.postDelayed(mStep, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    private void step() {
+        isScheduled = false;
+        int deltaX = 0;
+        int deltaY = 0;
+        if (mScrollerX.computeScrollOffset()) {
+            deltaX = mScrollerX.getCurrX() - mLastX;
+            mLastX = mScrollerX.getCurrX();
+        }
+        if (mScrollerY.computeScrollOffset()) {
+            deltaY = mScrollerY.getCurrX() - mLastY;
+            mLastY = mScrollerY.getCurrX();
+        }
+        if (deltaX != 0 || deltaY != 0) mCallback.onFlingStep(deltaX, deltaY);
+        // callback could stop axes on limits
+        if (isFlingingX() || isFlingingY()) schedule();
+    }
+
+    /**
+     * Separate class, so {@link Choreographer} isn't touched on older versions.
+     */
+    private static final class FrameCallback implements Choreographer.FrameCallback {
+        private final Runnable mStep;
+
+        FrameCallback(Runnable step) {
+            mStep = step;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mStep.run();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.polonium.linechart;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * Builds {@link LineGeometry} of one line on a shared background thread. At most one build per line is running,
+ * requests made meanwhile are coalesced into one build of the newest points started after it. Finished snapshot is
+ * swapped in atomically, the previous one is returned until then. Requests must be made on a thread with
+ * {@link Looper}, usually UI thread; the callback is called on the same thread.
+ */
+final class GeometryBuilder {
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "LineChartGeometry");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Receives notification on the requesting thread when new snapshot is available.
+     */
+    interface Callback {
+        void onGeometryReady(LineGeometry geometry);
+    }
+
+    private final Callback mCallback;
+    private Handler mHandler;
+    private final AtomicReference<LineGeometry> mGeometry = new AtomicReference<LineGeometry>();
+    private Future<?> mRunning;
+    private int mRunningModCount;
+    private boolean isPending = false;
+
+    GeometryBuilder(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * @return the latest finished snapshot or null if nothing was built yet
+     */
+    LineGeometry get() {
+        return mGeometry.get();
+    }
+
+    /**
+     * Requests snapshot of the line's current points. Nothing is done if it is ready or being built.
+     *
+     * @param line
+     *            line with points
+     * @param modCount
+     *            current modification count of the line
+     * @param subPoints
+     *            count of spline sub points
+     */
+    void request(Line line, int modCount, int subPoints) {
+        LineGeometry geometry = mGeometry.get();
+        if (geometry != null && geometry.modCount == modCount) return;
+        if (mRunning != null) {
+            // the newest points are copied when running build finishes
+            if (mRunningModCount != modCount) isPending = true;
+            return;
+        }
+        start(line, modCount, subPoints);
+    }
+
+    private void start(final Line line, final int modCount, final int subPoints) {
+        int size = line.getPointsCount();
+        final float[] xs = new float[size];
+        final float[] ys = new float[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = line.getX(i);
+            ys[i] = line.getY(i);
+        }
+        isPending = false;
+        mRunningModCount = modCount;
+        final Handler handler = getHandler();
+        mRunning = sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final LineGeometry geometry = LineGeometry.build(xs, ys, subPoints, modCount);
+                if (geometry == null) return;
+                mGeometry.set(geometry);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFinished(line, geometry);
+                    }
+                });
+            }
+        });
+    }
+
+    private Handler getHandler() {
+        Looper looper = Looper.myLooper();
+        if (looper == null) looper = Looper.getMainLooper();
+        if (mHandler == null || mHandler.getLooper() != looper) mHandler = new Handler(looper);
+        return mHandler;
+    }
+
+    private void onFinished(Line line, LineGeometry geometry) {
+        // build was cancelled while result was posted
+        if (mRunning == null || mRunningModCount != geometry.modCount) return;
+        mRunning = null;
+        mCallback.onGeometryReady(geometry);
+        if (isPending) line.getPath();
+    }
+
+    /**
+     * Cancels running build, for example when all points were replaced. Finished snapshot is kept.
+     */
+    void cancel() {
+        if (mRunning != null) mRunning.cancel(true);
+        mRunning = null;
+        isPending = false;
+    }
+
+    /**
+     * Cancels running build and drops the snapshot.
+     */
+    void release() {
+        cancel();
+        mGeometry.set(null);
+    }
+}
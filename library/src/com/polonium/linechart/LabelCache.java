@@ -0,0 +1,148 @@
+package com.polonium.linechart;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+
+/**
+ * Texts and widths of grid value labels. Slots are chosen by hash of the value and overwritten on collision, so only
+ * labels which appear on the screen for the first time are formatted and measured. Without
+ * {@link com.polonium.linechart.LabelFormatter LabelFormatter} values are written as integers into reused char arrays.
+ */
+final class LabelCache {
+
+    private static final int SIZE_BITS = 7;
+    private static final int SIZE = 1 << SIZE_BITS;
+    private static final int MAX_INT_LENGTH = 11;
+
+    private final int[] mValues = new int[SIZE];
+    private final boolean[] isCached = new boolean[SIZE];
+    private final char[][] mChars = new char[SIZE][];
+    private final int[] mLengths = new int[SIZE];
+    private final float[] mWidths = new float[SIZE];
+    private LabelFormatter mFormatter;
+    private Paint mPaint;
+    private float mTextSize;
+    private Typeface mTypeface;
+    private float mTextScaleX;
+    private float mTextSkewX;
+    private float mLetterSpacing;
+
+    /**
+     * Sets formatter of labels and forgets all cached labels.
+     * 
+     * @param formatter
+     *            formatter or null for integer values
+     */
+    void setFormatter(LabelFormatter formatter) {
+        mFormatter = formatter;
+        clear();
+    }
+
+    /**
+     * Forgets all cached labels.
+     */
+    void clear() {
+        for (int i = 0; i < SIZE; i++) {
+            isCached[i] = false;
+        }
+    }
+
+    /**
+     * Finds the label of the value, formats and measures it if needed.
+     * 
+     * @param value
+     *            grid value
+     * @param paint
+     *            paint for measuring, cache is cleared if paint or its text metrics are changed
+     * @return slot of the label
+     */
+    int find(int value, Paint paint) {
+        if (isChanged(paint)) {
+            mPaint = paint;
+            mTextSize = paint.getTextSize();
+            mTypeface = paint.getTypeface();
+            mTextScaleX = paint.getTextScaleX();
+            mTextSkewX = paint.getTextSkewX();
+            mLetterSpacing = getLetterSpacing(paint);
+            clear();
+        }
+        // Fibonacci hashing spreads multiples of the grid step
+        int slot = (value * 0x9E3779B9) >>> (32 - SIZE_BITS);
+        if (isCached[slot] && mValues[slot] == value) return slot;
+
+        int length;
+        if (mFormatter == null) {
+            if (mChars[slot] == null || mChars[slot].length < MAX_INT_LENGTH) mChars[slot] = new char[MAX_INT_LENGTH];
+            length = formatInt(value, mChars[slot]);
+        } else {
+            CharSequence text = mFormatter.format(value);
+            length = text == null ? 0 : text.length();
+            if (mChars[slot] == null || mChars[slot].length < length) mChars[slot] = new char[length];
+            for (int i = 0; i < length; i++) {
+                mChars[slot][i] = text.charAt(i);
+            }
+        }
+        mValues[slot] = value;
+        mLengths[slot] = length;
+        mWidths[slot] = length == 0 ? 0 : paint.measureText(mChars[slot], 0, length);
+        isCached[slot] = true;
+        return slot;
+    }
+
+    /**
+     * @return true if widths measured with cached paint differ from widths measured with the paint
+     */
+    private boolean isChanged(Paint paint) {
+        return paint != mPaint || paint.getTextSize() != mTextSize || paint.getTypeface() != mTypeface
+               || paint.getTextScaleX() != mTextScaleX || paint.getTextSkewX() != mTextSkewX
+               || getLetterSpacing(paint) != mLetterSpacing;
+    }
+
+    private static float getLetterSpacing(Paint paint) {
+        return Build.VERSION.SDK_INT >= 21 ? paint.getLetterSpacing() : 0;
+    }
+
+    /**
+     * @return chars of the label in the slot
+     */
+    char[] getChars(int slot) {
+        return mChars[slot];
+    }
+
+    /**
+     * @return length of the label in the slot, 0 if there is no text
+     */
+    int getLength(int slot) {
+        return mLengths[slot];
+    }
+
+    /**
+     * @return width of the label in the slot in pixels
+     */
+    float getWidth(int slot) {
+        return mWidths[slot];
+    }
+
+    /**
+     * Writes decimal integer into the buffer.
+     * 
+     * @return count of written chars
+     */
+    static int formatInt(int value, char[] buffer) {
+        // negative values keep all digits including Integer.MIN_VALUE
+        boolean isNegative = value < 0;
+        int length = isNegative ? 2 : 1;
+        for (int v = value / 10; v != 0; v /= 10) {
+            length++;
+        }
+        int i = length;
+        int v = value;
+        do {
+            buffer[--i] = (char) ('0' + Math.abs(v % 10));
+            v /= 10;
+        } while (v != 0);
+        if (isNegative) buffer[0] = '-';
+        return length;
+    }
+}
@@ -0,0 +1,17 @@
+package com.polonium.linechart;
+
+/**
+ * Text of grid value labels drawn by {@link com.polonium.linechart.LineChartView LineChartView}. Text is requested once
+ * per value and cached with its width, so formatter is not called while the chart is moving over known values.
+ */
+public interface LabelFormatter {
+
+    /**
+     * Gets text of the label.
+     * 
+     * @param value
+     *            grid value
+     * @return text for the value, null or empty to draw grid line without text
+     */
+    CharSequence format(int value);
+}
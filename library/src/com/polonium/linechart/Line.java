@@ -1,8 +1,13 @@
 package com.polonium.linechart;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import android.content.Context;
+import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
 import android.graphics.Path;
@@ -15,14 +20,99 @@ import android.util.TypedValue;
  */
 public class Line {
 
-    private ArrayList<LinePoint> mPoints = new ArrayList<LinePoint>();
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int LOD_VERTICES_PER_PIXEL = 2;
+
+    /**
+     * Level of detail reduction applied before line drawing.
+     */
+    public enum Decimation {
+        /** All points are drawn. */
+        NONE,
+        /**
+         * Largest-Triangle-Three-Buckets: keeps visual shape of the line with about two vertices per pixel column.
+         * Only points around ViewPort are reduced.
+         */
+        LTTB,
+        /**
+         * Min/max envelope: first, last, minimal and maximal point of each pixel column in ViewPort. Looks exactly as
+         * all points, but is recomputed when ViewPort is moved.
+         */
+        M4;
+    }
+
+    private float[] mXs = new float[INITIAL_CAPACITY];
+    private float[] mYs = new float[INITIAL_CAPACITY];
+    private LinePoint[] mAttached;
+    private byte[] mStyleIds;
+    private ArrayList<PointStyle> mStyles = new ArrayList<PointStyle>();
+    private PointStyle mPointStyle;
+    private int mSize = 0;
+    private int mHead = 0;
+    private int mCapacity = 0;
+    private float mMinY = Float.MAX_VALUE;
+    private float mMaxY = -Float.MAX_VALUE;
+    private boolean isBoundsValid = true;
     private Paint mPaint;
     private Paint mFilledPaint;
     private Path mPath = new Path();
+    private boolean isPathValid = true;
+    private int mSmoothSubPoints = 0;
     private boolean isFilled = false;
     private Path mFilledPath = new Path();
+    private boolean isFilledPathValid = true;
+    private int mModCount = 0;
+    /** Modification count of the last change other than appending to the end of straight line. */
+    private int mRebuildModCount = 0;
+    private Decimation mDecimation = Decimation.NONE;
+    private float[] mLodXs;
+    private float[] mLodYs;
+    private int mLodSize = 0;
+    private float mLodScaleX = Float.NaN;
+    private float mLodFromX = Float.NaN;
+    private float mLodToX = Float.NaN;
+    private int mLodModCount = -1;
+    private Path mLodPath = new Path();
+    private Path mLodFilledPath = new Path();
+    private boolean isLodFilledPathValid = false;
+    private int mLodVersion = 0;
+    private ScreenPath mScreenPath = new ScreenPath();
+    private ScreenPath mScreenFilledPath = new ScreenPath();
+    private LinePicture mPicture;
+    private DraftPath mDraftPath;
+    private GeometryBuilder mBuilder;
+    private volatile SampleQueue mSampleQueue;
+    private final CopyOnWriteArrayList<Runnable> mSampleListeners = new CopyOnWriteArrayList<Runnable>();
+    private float[] mDrainXs;
+    private float[] mDrainYs;
+    private int mUpdateDepth = 0;
+    private float mPendingFromX = Float.MAX_VALUE;
+    private float mPendingToX = -Float.MAX_VALUE;
+    private int mStyleVersion = 0;
+    private MinMaxPyramid mPyramid;
+    private DataPager mPager;
+    private long mDataCacheBudget = 4L * 1024 * 1024;
     private DisplayMetrics displayMetrics;
     private String mName = "Default";
+    private ArrayList<OnChangeListener> mListeners;
+
+    /**
+     * Receives ranges of horizontal coordinates where drawing of the line was changed.
+     */
+    interface OnChangeListener {
+
+        /**
+         * Called after change of points or look of the line.
+         * 
+         * @param line
+         *            changed line
+         * @param fromX
+         *            minimal horizontal coordinate of changed drawing
+         * @param toX
+         *            maximal horizontal coordinate of changed drawing
+         */
+        void onLineChanged(Line line, float fromX, float toX);
+    }
 
     /**
      * get line name
@@ -41,12 +131,19 @@ public class Line {
     }
 
     /**
-     * Getter for points which creates line.
+     * Getter for points which creates line. Points without {@link LinePoint} object are returned as new objects
+     * which are kept by the line only when they are changed, so reading the points doesn't store them. Changing the
+     * list doesn't change the line.
      * 
      * @return points
      */
     public ArrayList<LinePoint> getPoints() {
-        return mPoints;
+        ArrayList<LinePoint> points = new ArrayList<LinePoint>(mSize);
+        for (int i = 0; i < mSize; i++) {
+            LinePoint point = getAttachedPoint(i);
+            points.add(point != null ? point : createPoint(i).detachedFrom(this));
+        }
+        return points;
     }
 
     /**
@@ -76,55 +173,216 @@ public class Line {
         displayMetrics = context.getResources().getDisplayMetrics();
     }
 
+    private void ensureCapacity(int capacity) {
+        // ring buffer never grows, oldest points are evicted instead
+        if (mCapacity > 0 || capacity <= mXs.length) return;
+        resizeColumns(Math.max(capacity, mXs.length + (mXs.length >> 1)));
+    }
+
+    private void resizeColumns(int length) {
+        mXs = Arrays.copyOf(mXs, length);
+        mYs = Arrays.copyOf(mYs, length);
+        if (mAttached != null) mAttached = Arrays.copyOf(mAttached, length);
+        if (mStyleIds != null) mStyleIds = Arrays.copyOf(mStyleIds, length);
+    }
+
+    /**
+     * Copies points inside columns, as {@link System#arraycopy} does for each column.
+     */
+    private void copyPoints(int from, int to, int count) {
+        System.arraycopy(mXs, from, mXs, to, count);
+        System.arraycopy(mYs, from, mYs, to, count);
+        if (mAttached != null) System.arraycopy(mAttached, from, mAttached, to, count);
+        if (mStyleIds != null) System.arraycopy(mStyleIds, from, mStyleIds, to, count);
+    }
+
+    /**
+     * Clears side tables of the slot in columns.
+     */
+    private void clearSideTables(int p) {
+        if (mAttached != null) mAttached[p] = null;
+        if (mStyleIds != null) mStyleIds[p] = 0;
+    }
+
+    /**
+     * Maps index of the point to index in columns. Differs only for ring buffer which has wrapped.
+     */
+    private int phys(int index) {
+        int p = mHead + index;
+        return p < mXs.length ? p : p - mXs.length;
+    }
+
+    /**
+     * Moves ring buffer content to the start of columns, so structural changes can use plain array copies.
+     */
+    private void unwrap() {
+        if (mHead == 0) return;
+        mXs = rotate(mXs, new float[mXs.length]);
+        mYs = rotate(mYs, new float[mYs.length]);
+        if (mAttached != null) mAttached = rotate(mAttached, new LinePoint[mAttached.length]);
+        if (mStyleIds != null) mStyleIds = rotate(mStyleIds, new byte[mStyleIds.length]);
+        mHead = 0;
+    }
+
+    private <T> T rotate(T column, T result) {
+        int first = Math.min(mSize, mXs.length - mHead);
+        System.arraycopy(column, mHead, result, 0, first);
+        System.arraycopy(column, 0, result, first, mSize - first);
+        return result;
+    }
+
+    private void attach(int index, LinePoint point) {
+        if (mAttached == null) mAttached = new LinePoint[mXs.length];
+        mAttached[phys(index)] = point;
+        point.attachedTo(this);
+    }
+
+    /**
+     * Inserts the point. Full ring buffer evicts its oldest point first.
+     * 
+     * @return index of inserted point
+     */
+    private int insert(int index, float x, float y, LinePoint point) {
+        boolean isEvicted = mCapacity > 0 && mSize == mCapacity;
+        if (isEvicted) {
+            evictFirst();
+            if (index > 0) index--;
+        }
+        ensureCapacity(mSize + 1);
+        if (index < mSize) {
+            unwrap();
+            copyPoints(index, index + 1, mSize - index);
+        }
+        int p = phys(index);
+        mXs[p] = x;
+        mYs[p] = y;
+        clearSideTables(p);
+        if (point != null) attach(index, point);
+        mSize++;
+        if (isBoundsValid) {
+            if (y < mMinY) mMinY = y;
+            if (y > mMaxY) mMaxY = y;
+        }
+        if (mPyramid != null) {
+            if (index == mSize - 1 && mPyramid.isValid()) mPyramid.append(this);
+            else mPyramid.invalidate();
+        }
+        notifyChanged(index - 1, index + 1);
+        return index;
+    }
+
+    private void evictFirst() {
+        notifyChanged(0, 1);
+        LinePoint evicted = getAttachedPoint(0);
+        if (evicted != null) evicted.detach();
+        clearSideTables(mHead);
+        removeFromBounds(mYs[mHead]);
+        if (mPyramid != null && mPyramid.isValid()) mPyramid.evictFirst();
+        mHead = phys(1);
+        mSize--;
+        // path can't drop its first segment, it is rebuilt lazily once before drawing
+        invalidatePath();
+    }
+
+    private void clear() {
+        notifyChanged(0, mSize - 1);
+        // build of replaced points is useless
+        if (mBuilder != null) mBuilder.cancel();
+        for (int i = 0; mAttached != null && i < mSize; i++) {
+            LinePoint point = getAttachedPoint(i);
+            if (point != null) point.detach();
+        }
+        mSize = 0;
+        mHead = 0;
+        mAttached = null;
+        mStyleIds = null;
+        mMinY = Float.MAX_VALUE;
+        mMaxY = -Float.MAX_VALUE;
+        isBoundsValid = true;
+        if (mPyramid != null) mPyramid.invalidate();
+        invalidatePath();
+    }
+
+    /**
+     * Marks paths as outdated. They are rebuilt once on next request, so many changes between two frames cost one
+     * rebuild.
+     */
+    private void invalidatePath() {
+        isPathValid = false;
+        isFilledPathValid = false;
+        mModCount++;
+        mRebuildModCount = mModCount;
+    }
+
+    /**
+     * Updates paths for points appended to the end. Valid path is extended in place; path built in background is
+     * extended by {@link #getPath()} once, when it is taken over, so appends don't request new builds.
+     *
+     * @param start
+     *            index of the first appended point
+     * @return false if the path must be rebuilt
+     */
+    private boolean appendToPath(int start) {
+        if (mSmoothSubPoints > 0 || (!isPathValid && mBuilder == null)) return false;
+        if (isPathValid) {
+            int i = start;
+            if (start == 0) mPath.moveTo(getX(i), getY(i++));
+            for (; i < mSize; i++) {
+                mPath.lineTo(getX(i), getY(i));
+            }
+        }
+        isFilledPathValid = false;
+        mModCount++;
+        return true;
+    }
+
     private void buildPath() {
         mPath.reset();
-        mPath.moveTo(mPoints.get(0).getX(), mPoints.get(0).getY());
-        for (int i = 1; i < mPoints.size(); i += 1) {
-            // mPath.quadTo(mPoints.get(i).getX(), mPoints.get(i).getY(),
-            // (mPoints.get(i).getX() + mPoints.get(i + 1)
-            // .getX()) / 2, ( mPoints.get(i).getY()+mPoints.get(i +
-            // 1).getY())/2);
-            mPath.lineTo(mPoints.get(i).getX(), mPoints.get(i).getY());
+        isPathValid = true;
+        if (mSize == 0) return;
+        mPath.moveTo(getX(0), getY(0));
+        // spline needs at least 4 points
+        if (mSmoothSubPoints > 0 && mSize > 3) {
+            buildSmoothPath(mSmoothSubPoints);
+        } else {
+            for (int i = 1; i < mSize; i += 1) {
+                mPath.lineTo(getX(i), getY(i));
+            }
         }
-        if (isFilled) {
-            mFilledPath = new Path(mPath);
-            mFilledPath.lineTo(mPoints.get(mPoints.size() - 1).getX(), 0);
-            mFilledPath.lineTo(mPoints.get(0).getX(), 0);
-            mFilledPath.close();
+    }
+
+    private void buildSmoothPath(int subPoints) {
+        double[] dataX = new double[mSize];
+        double[] dataY = new double[mSize];
+        for (int i = 0; i < mSize; i++) {
+            dataX[i] = getX(i);
+            dataY[i] = getY(i);
         }
+        LineGeometry.appendSpline(mPath, dataX, dataY, subPoints);
+    }
+
+    private void buildFilledPath() {
+        mFilledPath.set(getPath());
+        isFilledPathValid = true;
+        if (mSize == 0) return;
+        mFilledPath.lineTo(getMaxX(), 0);
+        mFilledPath.lineTo(getMinX(), 0);
+        mFilledPath.close();
     }
 
     /**
-     * Smooth line with spline interpolation. Don't adds new points to line, just smooth path for drawing.
+     * Smooth line with spline interpolation. Don't adds new points to line, just smooth path for drawing. Smoothing is
+     * kept for points added later.
      * 
      * @param subPoints
-     *            count of sub points
+     *            count of sub points, 0 to draw straight segments
      * @return this
      */
     public Line smoothLine(int subPoints) {
-        double[] dataX = new double[mPoints.size()];
-        double[] dataY = new double[mPoints.size()];
-        for (int i = 0; i < mPoints.size(); i++) {
-            dataX[i] = mPoints.get(i).getX();
-            dataY[i] = mPoints.get(i).getY();
-        }
-        mPath.reset();
-        mPath.moveTo(mPoints.get(0).getX(), mPoints.get(0).getY());
-        Spline sp = new Spline(dataX, dataY);
-        for (int i = 0; i < mPoints.size() - 1; i += 1) {
-            double step = (dataX[i + 1] - dataX[i]) / (subPoints + 1);
-            for (int j = 1; j <= subPoints; j++) {
-                double x = dataX[i] + step * j;
-                mPath.lineTo((float) x, (float) sp.spline_value(x));
-            }
-            mPath.lineTo((float) dataX[i + 1], (float) dataY[i + 1]);
-        }
-        if (isFilled) {
-            mFilledPath = new Path(mPath);
-            mFilledPath.lineTo(mPoints.get(mPoints.size() - 1).getX(), 0);
-            mFilledPath.lineTo(mPoints.get(0).getX(), 0);
-            mFilledPath.close();
-        }
+        mSmoothSubPoints = Math.max(subPoints, 0);
+        if (mBuilder != null) mBuilder.cancel();
+        invalidatePath();
+        notifyChanged();
         return this;
     }
 
@@ -134,6 +392,25 @@ public class Line {
      * @return path
      */
     Path getPath() {
+        if (!isPathValid) {
+            if (mBuilder != null) {
+                LineGeometry geometry = mBuilder.get();
+                if (geometry != null && geometry.modCount >= mRebuildModCount && geometry.size <= mSize) {
+                    // only points appended since the snapshot: it is taken over and extended by them
+                    mPath.set(geometry.path);
+                    isPathValid = true;
+                    for (int i = geometry.size; i < mSize; i++) {
+                        if (i == 0) mPath.moveTo(getX(i), getY(i));
+                        else mPath.lineTo(getX(i), getY(i));
+                    }
+                    return mPath;
+                }
+                geometry = requestGeometry();
+                // previous path is drawn until the first snapshot is ready
+                return geometry != null ? geometry.path : mPath;
+            }
+            buildPath();
+        }
         return mPath;
     }
 
@@ -143,93 +420,1349 @@ public class Line {
      * @return the filled path
      */
     Path getFilledPath() {
+        if (!isFilledPathValid) {
+            if (mBuilder != null && !isPathValid) {
+                getPath();
+                LineGeometry geometry = mBuilder.get();
+                if (!isPathValid) return geometry != null ? geometry.filledPath : mFilledPath;
+            }
+            buildFilledPath();
+        }
         return mFilledPath;
     }
 
+    private LineGeometry requestGeometry() {
+        mBuilder.request(this, mModCount, mSmoothSubPoints);
+        return mBuilder.get();
+    }
+
+    /**
+     * Enables building of the path on a background thread. Until it is built the previous path is drawn, points
+     * changed meanwhile are built once after it. Useful for smoothed lines and lines with many points set at once,
+     * points appended one by one to straight line are added to the path immediately.
+     * 
+     * @param isEnabled
+     *            true to build path in background
+     * @return this
+     */
+    public Line setBackgroundBuildEnabled(boolean isEnabled) {
+        if (isEnabled == (mBuilder != null)) return this;
+        if (isEnabled) {
+            mBuilder = new GeometryBuilder(new GeometryBuilder.Callback() {
+                @Override
+                public void onGeometryReady(LineGeometry geometry) {
+                    notifyChanged();
+                }
+            });
+        } else {
+            mBuilder.release();
+            mBuilder = null;
+        }
+        return this;
+    }
+
+    /**
+     * @return true if path is built in background
+     * 
+     * @see #setBackgroundBuildEnabled
+     */
+    public boolean isBackgroundBuildEnabled() {
+        return mBuilder != null;
+    }
+
+    /**
+     * Gets the {@link {@link android.graphics.Path Path} for drawing at the scale with {@link #getDecimation()
+     * decimation} applied. Without decimation path may contain only points near visible range. Path is cached and
+     * rebuilt only when points or parameters it depends on are changed.
+     * 
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param fromX
+     *            horizontal coordinate at the left edge of the view, left edge of pixel column 0
+     * @param toX
+     *            horizontal coordinate at the right edge of the view
+     * @return path
+     */
+    Path getPath(float scaleX, float fromX, float toX) {
+        return updateLod(scaleX, fromX, toX) ? mLodPath : getPath();
+    }
+
+    /**
+     * Gets {@link {@link android.graphics.Path Path} for filling underline space at the scale.
+     * 
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param fromX
+     *            horizontal coordinate at the left edge of the view
+     * @param toX
+     *            horizontal coordinate at the right edge of the view
+     * @return the filled path
+     * 
+     * @see #getPath(float, float, float)
+     */
+    Path getFilledPath(float scaleX, float fromX, float toX) {
+        if (!updateLod(scaleX, fromX, toX)) return getFilledPath();
+        if (!isLodFilledPathValid) {
+            mLodFilledPath.set(mLodPath);
+            mLodFilledPath.lineTo(mLodXs[mLodSize - 1], 0);
+            mLodFilledPath.lineTo(mLodXs[0], 0);
+            mLodFilledPath.close();
+            isLodFilledPathValid = true;
+        }
+        return mLodFilledPath;
+    }
+
+    /**
+     * Gets the path for drawing scaled to pixels. Scaled path is cached, so only translation is left for drawing while
+     * points and scale are not changed.
+     * 
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param scaleY
+     *            pixels per unit of vertical coordinate
+     * @param fromX
+     *            horizontal coordinate at the left edge of the view
+     * @param toX
+     *            horizontal coordinate at the right edge of the view
+     * @return path with chart zero at origin and vertical axis turned down
+     * 
+     * @see #getPath(float, float, float)
+     */
+    Path getScreenPath(float scaleX, float scaleY, float fromX, float toX) {
+        Path path = getPath(scaleX, fromX, toX);
+        return mScreenPath.get(path, getPathVersion(), scaleX, scaleY);
+    }
+
+    /**
+     * Gets the path for filling underline space scaled to pixels.
+     * 
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param scaleY
+     *            pixels per unit of vertical coordinate
+     * @param fromX
+     *            horizontal coordinate at the left edge of the view
+     * @param toX
+     *            horizontal coordinate at the right edge of the view
+     * @return path with chart zero at origin and vertical axis turned down
+     * 
+     * @see #getScreenPath(float, float, float, float)
+     */
+    Path getScreenFilledPath(float scaleX, float scaleY, float fromX, float toX) {
+        Path path = getFilledPath(scaleX, fromX, toX);
+        return mScreenFilledPath.get(path, getPathVersion(), scaleX, scaleY);
+    }
+
+    /**
+     * Gets cheap version of the path for drawing during gestures: min/max envelope of visible points with two pixels
+     * wide columns. Smoothed lines and lines with few visible points are drawn as usual.
+     * 
+     * @return path with chart zero at origin and vertical axis turned down
+     * 
+     * @see #getScreenPath(float, float, float, float)
+     */
+    Path getDraftScreenPath(float scaleX, float scaleY, float fromX, float toX) {
+        if (!updateDraft(scaleX, fromX, toX)) return getScreenPath(scaleX, scaleY, fromX, toX);
+        return mDraftPath.getScreenPath(scaleX, scaleY);
+    }
+
+    /**
+     * Gets cheap version of the path for filling underline space.
+     * 
+     * @see #getDraftScreenPath(float, float, float, float)
+     */
+    Path getDraftScreenFilledPath(float scaleX, float scaleY, float fromX, float toX) {
+        if (!updateDraft(scaleX, fromX, toX)) return getScreenFilledPath(scaleX, scaleY, fromX, toX);
+        return mDraftPath.getScreenFilledPath(scaleX, scaleY);
+    }
+
+    private boolean updateDraft(float scaleX, float fromX, float toX) {
+        if (scaleX <= 0 || mSize == 0 || isSmoothed()) return false;
+        if (mDraftPath == null) mDraftPath = new DraftPath();
+        if (mPyramid != null && !mPyramid.isValid()) mPyramid.build(this);
+        return mDraftPath.update(this, mPyramid, mModCount, scaleX, fromX, toX);
+    }
+
+    /**
+     * @return number changed with every change of any path, both counters only grow
+     */
+    private int getPathVersion() {
+        return mModCount + mLodVersion;
+    }
+
+    /**
+     * Draws the line and its filling from recorded picture, records it first if the line or the scale was changed.
+     * Canvas should be translated to chart zero.
+     * 
+     * @return false if recording is disabled or isn't supported by the canvas
+     * 
+     * @see #setRecordingEnabled
+     */
+    boolean drawRecorded(Canvas canvas, float scaleX, float scaleY, float fromX, float toX) {
+        // M4 path follows every move of ViewPort, recording would be made every frame
+        if (mPicture == null || mDecimation == Decimation.M4 || !LinePicture.isSupported(canvas)) return false;
+        Path path = getScreenPath(scaleX, scaleY, fromX, toX);
+        Path filledPath = isFilled ? getScreenFilledPath(scaleX, scaleY, fromX, toX) : null;
+        // window or decimated path is rebuilt with ViewPort moving, version follows it
+        int version = getPathVersion() + mStyleVersion;
+        if (!mPicture.isValid(version, scaleX, scaleY)) {
+            mPicture.record(version, scaleX, scaleY, path, mPaint, filledPath, mFilledPaint);
+        }
+        mPicture.draw(canvas);
+        return true;
+    }
+
+    /**
+     * Decimates points for the scale if needed. LTTB reduces a window around visible range and is reused while
+     * ViewPort stays in it, M4 result depends on exact visible range.
+     * Without decimation only visible part of the line is kept in the path.
+     * 
+     * @return true if decimated path should be drawn
+     */
+    private boolean updateLod(float scaleX, float fromX, float toX) {
+        if (scaleX <= 0 || mSize == 0) return false;
+        if (mDecimation == Decimation.NONE) return updateWindow(fromX, toX);
+        boolean isWindowed = mDecimation == Decimation.LTTB;
+        if (scaleX == mLodScaleX && mModCount == mLodModCount
+            && (isWindowed ? fromX >= mLodFromX && toX <= mLodToX : fromX == mLodFromX && toX == mLodToX)) {
+            return mLodSize > 0;
+        }
+        mLodScaleX = scaleX;
+        mLodFromX = fromX;
+        mLodToX = toX;
+        mLodModCount = mModCount;
+        mLodSize = 0;
+        isLodFilledPathValid = false;
+        if (mDecimation == Decimation.LTTB) {
+            // window is widened by half of visible width from each side, so panning inside it reuses the result
+            float margin = (toX - fromX) / 2;
+            mLodFromX = fromX - margin;
+            mLodToX = toX + margin;
+            int from = Math.max(lowerBound(mLodFromX) - 1, 0);
+            int to = Math.min(upperBound(mLodToX) + 1, mSize);
+            double bucketWidth = 1.0 / (scaleX * LOD_VERTICES_PER_PIXEL);
+            long buckets = Decimator.bucketsCount(this, from, to, bucketWidth);
+            if (to - from <= buckets + 2) {
+                // nothing to reduce
+                if (from == 0 && to == mSize) return false;
+                ensureLodCapacity(to - from);
+                for (int i = from; i < to; i++) {
+                    mLodXs[mLodSize] = getX(i);
+                    mLodYs[mLodSize++] = getY(i);
+                }
+            } else {
+                ensureLodCapacity((int) buckets + 2);
+                mLodSize = Decimator.lttb(this, from, to, bucketWidth, mLodXs, mLodYs);
+            }
+        } else {
+            // one point outside from each side keeps segments crossing view edges
+            int from = Math.max(lowerBound(fromX) - 1, 0);
+            int to = Math.min(upperBound(toX) + 1, mSize);
+            long columns = (long) Math.ceil(((double) toX - fromX) * scaleX) + 3;
+            if (to - from <= 4 * columns) {
+                if (from == 0 && to == mSize) return false;
+                ensureLodCapacity(to - from);
+            } else {
+                ensureLodCapacity((int) (4 * columns));
+            }
+            MinMaxPyramid pyramid = null;
+            int level = -1;
+            if (mPyramid != null) {
+                if (!mPyramid.isValid()) mPyramid.build(this);
+                // buckets about half of pixel column wide
+                level = mPyramid.levelFor((to - from) / (2.0 * columns));
+                if (level >= 0) pyramid = mPyramid;
+            }
+            mLodSize = Decimator.m4(this, pyramid, level, from, to, fromX, scaleX, mLodXs, mLodYs);
+        }
+        buildLodPath();
+        return mLodSize > 0;
+    }
+
+    /**
+     * Keeps in the path only points of the visible range widened by half of its width from each side, so the path is
+     * rebuilt only after panning for that distance. Cost of drawing depends on visible points count, not on total one.
+     * 
+     * @return true if path of the window should be drawn
+     */
+    private boolean updateWindow(float fromX, float toX) {
+        // spline through part of points differs from spline through all of them
+        if (mSmoothSubPoints > 0 && mSize > 3) return false;
+        if (mModCount == mLodModCount && fromX >= mLodFromX && toX <= mLodToX) return mLodSize > 0;
+        float margin = (toX - fromX) / 2;
+        mLodScaleX = 0;
+        mLodFromX = fromX - margin;
+        mLodToX = toX + margin;
+        mLodModCount = mModCount;
+        mLodSize = 0;
+        isLodFilledPathValid = false;
+        // one point outside from each side keeps segments crossing window edges
+        int from = Math.max(lowerBound(mLodFromX) - 1, 0);
+        int to = Math.min(upperBound(mLodToX) + 1, mSize);
+        if (from == 0 && to == mSize) return false;
+        ensureLodCapacity(to - from);
+        for (int i = from; i < to; i++) {
+            mLodXs[mLodSize] = getX(i);
+            mLodYs[mLodSize++] = getY(i);
+        }
+        buildLodPath();
+        return mLodSize > 0;
+    }
+
+    private void buildLodPath() {
+        mLodVersion++;
+        mLodPath.rewind();
+        if (mLodSize > 0) mLodPath.moveTo(mLodXs[0], mLodYs[0]);
+        for (int i = 1; i < mLodSize; i++) {
+            mLodPath.lineTo(mLodXs[i], mLodYs[i]);
+        }
+    }
+
+    private void ensureLodCapacity(int capacity) {
+        if (mLodXs == null || mLodXs.length < capacity) {
+            mLodXs = new float[capacity];
+            mLodYs = new float[capacity];
+        }
+    }
+
+    /**
+     * Sets level of detail reduction for drawing. Points of the line are not changed.
+     * 
+     * @param decimation
+     *            decimation algorithm
+     * @return this
+     */
+    public Line setDecimation(Decimation decimation) {
+        if (decimation == mDecimation) return this;
+        mDecimation = decimation;
+        // reduced points and draft paths are cached by modification count
+        invalidatePath();
+        notifyChanged();
+        return this;
+    }
+
+    /**
+     * @return level of detail reduction for drawing
+     * 
+     * @see #setDecimation
+     */
+    public Decimation getDecimation() {
+        return mDecimation;
+    }
+
+    /**
+     * Enables multi-resolution min/max pyramid of points. It is built once in O(n) and updated in O(log n) when points
+     * are appended to the end, then {@link Decimation#M4 M4} drawing touches count of pixel columns instead of count
+     * of visible points. Other changes of points rebuild pyramid on next drawing.
+     * 
+     * @param isEnabled
+     *            true to keep pyramid
+     * @return this
+     * 
+     * @see #getPyramidMemoryUsage()
+     */
+    public Line setPyramidEnabled(boolean isEnabled) {
+        if (isEnabled == (mPyramid != null)) return this;
+        mPyramid = isEnabled ? new MinMaxPyramid() : null;
+        invalidatePath();
+        notifyChanged();
+        return this;
+    }
+
+    /**
+     * @return true if min/max pyramid is kept
+     * 
+     * @see #setPyramidEnabled
+     */
+    public boolean isPyramidEnabled() {
+        return mPyramid != null;
+    }
+
+    /**
+     * @return bytes used by min/max pyramid, about two per point
+     * 
+     * @see #setPyramidEnabled
+     */
+    public long getPyramidMemoryUsage() {
+        return mPyramid == null ? 0 : mPyramid.getMemoryUsage();
+    }
+
+    /**
+     * Enables recording of line drawing into {@link android.graphics.Picture Picture}. Recording is made once per
+     * scale and replayed with translation while ViewPort is moving, changes of points and setters of the line record it
+     * again. Useful for lines with rarely changed points, lines with {@link Decimation#M4 M4} decimation are drawn
+     * without recording. Paints changed directly should be set again by
+     * {@link #setPaint} or {@link #setFilledPaint}.
+     * 
+     * @param isEnabled
+     *            true to record drawing
+     * @return this
+     */
+    public Line setRecordingEnabled(boolean isEnabled) {
+        mPicture = isEnabled ? (mPicture == null ? new LinePicture() : mPicture) : null;
+        return this;
+    }
+
     /**
-     * Sets the points.
+     * @return true if drawing of the line is recorded
+     * 
+     * @see #setRecordingEnabled
+     */
+    public boolean isRecordingEnabled() {
+        return mPicture != null;
+    }
+
+    /**
+     * Sets the points. Coordinates are copied to the line, points themselves are kept to preserve their style.
      * 
      * @param points
      *            points
      * @return this
      */
-    public Line setPoints(ArrayList<LinePoint> points) {
-        this.mPoints = points;
-        buildPath();
-        return this;
+    public Line setPoints(List<LinePoint> points) {
+        beginUpdate();
+        clear();
+        ensureCapacity(points.size());
+        for (LinePoint point : points) {
+            insert(mSize, point.getX(), point.getY(), point);
+        }
+        invalidatePath();
+        return endUpdate();
     }
 
     /**
-     * Adds the point at the end of the line.
+     * Sets the points from coordinate arrays without creating {@link LinePoint} objects. Points are sorted by
+     * horizontal coordinate if needed.
      * 
-     * @param point
-     *            the point
+     * @param x
+     *            horizontal coordinates
+     * @param y
+     *            vertical coordinates
+     * @param offset
+     *            index of the first point in arrays
+     * @param count
+     *            count of points
      * @return this
      */
-    public Line addPoint(LinePoint point) {
-        LinePoint p;
-        for (int i = 0; i < mPoints.size(); i++) {
-            p = mPoints.get(i);
-            if (point.getX() < p.getX()) {
-                mPoints.add(i, point);
-                return this;
+    public Line setPoints(float[] x, float[] y, int offset, int count) {
+        checkRange(x.length, y.length, offset, count);
+        beginUpdate();
+        clear();
+        appendPoints(x, y, offset, count);
+        return endUpdate();
+    }
+
+    /**
+     * Sets the points from coordinate buffers without creating {@link LinePoint} objects. All remaining values of
+     * buffers are read, buffer positions are not changed.
+     * 
+     * @param x
+     *            horizontal coordinates
+     * @param y
+     *            vertical coordinates
+     * @return this
+     */
+    public Line setPoints(FloatBuffer x, FloatBuffer y) {
+        checkRange(x.remaining(), y.remaining(), 0, x.remaining());
+        beginUpdate();
+        clear();
+        appendPoints(x, y);
+        return endUpdate();
+    }
+
+    /**
+     * Adds points from coordinate arrays without creating {@link LinePoint} objects. Points after the end of the line
+     * extend its path, otherwise they are merged into the line keeping points sorted.
+     * 
+     * @param x
+     *            horizontal coordinates
+     * @param y
+     *            vertical coordinates
+     * @param offset
+     *            index of the first point in arrays
+     * @param count
+     *            count of points
+     * @return this
+     */
+    public Line appendPoints(float[] x, float[] y, int offset, int count) {
+        checkRange(x.length, y.length, offset, count);
+        if (mCapacity > 0) {
+            beginUpdate();
+            for (int i = offset; i < offset + count; i++) {
+                addSorted(x[i], y[i], null);
             }
+            return endUpdate();
         }
-        mPoints.add(point);
-        buildPath();
+        ensureCapacity(mSize + count);
+        System.arraycopy(x, offset, mXs, mSize, count);
+        System.arraycopy(y, offset, mYs, mSize, count);
+        commitAppended(count);
         return this;
-
     }
 
     /**
-     * Removes the point.
+     * Enables {@link #offerPoint(float, float)} from any thread. Points are kept in a lock-free queue until
+     * {@link LineChartView} showing the line moves them to the line once per frame, so neither producers nor UI thread
+     * wait for each other. Must be called on UI thread before producers start.
      * 
-     * @param point
-     *            point from line
+     * @param capacity
+     *            count of points the queue holds between frames, rounded up to power of two; 0 to disable
      * @return this
      */
-    public Line removePoint(LinePoint point) {
-        mPoints.remove(point);
-        buildPath();
+    public Line setSampleQueueCapacity(int capacity) {
+        mSampleQueue = capacity > 0 ? new SampleQueue(capacity) : null;
         return this;
     }
 
     /**
-     * Gets the point by index.
+     * @return count of points the queue holds between frames, 0 if it is disabled
      * 
-     * @param index
-     *            index of the point
-     * @return point with <i>index</i>
+     * @see #setSampleQueueCapacity
      */
-    public LinePoint getPoint(int index) {
-        return mPoints.get(index);
+    public int getSampleQueueCapacity() {
+        SampleQueue queue = mSampleQueue;
+        return queue == null ? 0 : queue.getCapacity();
     }
 
     /**
-     * Gets the point with coords.
+     * Adds the point from any thread without blocking. The point appears in the line when queue is drained.
      * 
      * @param x
-     *            x
+     *            horizontal coordinate
      * @param y
-     *            y
-     * @return point
+     *            vertical coordinate
+     * @return false if the queue is disabled or full and the point was dropped
+     * 
+     * @see #setSampleQueueCapacity
+     * @see #drainSamples()
      */
-    public LinePoint getPoint(float x, float y) {
-        LinePoint p;
-        for (int i = 0; i < mPoints.size(); i++) {
-            p = mPoints.get(i);
-            if (p.getX() == x && p.getY() == y) return p;
+    public boolean offerPoint(float x, float y) {
+        SampleQueue queue = mSampleQueue;
+        if (queue == null || !queue.offer(x, y)) return false;
+        if (queue.arm()) {
+            for (Runnable listener : mSampleListeners) {
+                listener.run();
+            }
         }
-        return null;
+        return true;
     }
 
     /**
-     * Points count.
+     * Moves points offered from other threads to the line. Called by {@link LineChartView}, lines not added to a view
+     * should be drained by the owner. Must be called on UI thread.
      * 
-     * @return count
+     * @return count of added points
      */
-    public int getPointsCount() {
-        return mPoints.size();
+    public int drainSamples() {
+        SampleQueue queue = mSampleQueue;
+        if (queue == null) return 0;
+        if (mDrainXs == null || mDrainXs.length != queue.getCapacity()) {
+            mDrainXs = new float[queue.getCapacity()];
+            mDrainYs = new float[queue.getCapacity()];
+        }
+        int total = 0;
+        int count;
+        beginUpdate();
+        do {
+            count = queue.drain(mDrainXs, mDrainYs);
+            if (count > 0) appendPoints(mDrainXs, mDrainYs, 0, count);
+            total += count;
+        } while (count == mDrainXs.length);
+        endUpdate();
+        return total;
+    }
+
+    /**
+     * @return count of points dropped because the queue was full
+     * 
+     * @see #setSampleQueueCapacity
+     */
+    public long getDroppedSamplesCount() {
+        SampleQueue queue = mSampleQueue;
+        return queue == null ? 0 : queue.getDroppedCount();
+    }
+
+    /**
+     * Adds listener called on producer thread when the first point after drain is offered.
+     */
+    void addSampleListener(Runnable listener) {
+        mSampleListeners.addIfAbsent(listener);
+    }
+
+    void removeSampleListener(Runnable listener) {
+        mSampleListeners.remove(listener);
+    }
+
+    /**
+     * Sets source of points loaded by parts around ViewPort of {@link LineChartView}, so points never fit in memory
+     * at once. Points of the line are replaced by loaded ones and shouldn't be changed by other methods. Must be
+     * called on UI thread.
+     * 
+     * @param source
+     *            data source or null to keep only points already shown
+     * @return this
+     * 
+     * @see #setDataCacheBudget
+     */
+    public Line setDataSource(ChartDataSource source) {
+        if (mPager != null) mPager.release();
+        mPager = null;
+        if (source != null) {
+            mPager = new DataPager(this, source);
+            mPager.setBudget(mDataCacheBudget);
+            setPoints(new float[0], new float[0], 0, 0);
+        }
+        return this;
+    }
+
+    /**
+     * @return source of points or null if points are set directly
+     */
+    public ChartDataSource getDataSource() {
+        return mPager == null ? null : mPager.getSource();
+    }
+
+    /**
+     * Sets memory limit for points loaded from data source. Least recently used parts are dropped first, parts around
+     * ViewPort are always kept.
+     * 
+     * @param bytes
+     *            budget in bytes, 4 MB by default
+     * @return this
+     */
+    public Line setDataCacheBudget(long bytes) {
+        mDataCacheBudget = bytes;
+        if (mPager != null) mPager.setBudget(bytes);
+        return this;
+    }
+
+    /**
+     * @return bytes used by points loaded from data source
+     */
+    public long getDataCacheMemoryUsage() {
+        return mPager == null ? 0 : mPager.getMemoryUsage();
+    }
+
+    DataPager getDataPager() {
+        return mPager;
+    }
+
+    /**
+     * Loads points of the data source around the range, loaded ones replace points of the line.
+     */
+    void requestData(float fromX, float toX, float scaleX) {
+        if (mPager != null) mPager.update(fromX, toX, scaleX);
+    }
+
+    /**
+     * Cancels background build of the path and loads of the data source, they are requested again by next drawing.
+     */
+    void cancelBackgroundWork() {
+        if (mBuilder != null) mBuilder.cancel();
+        if (mPager != null) mPager.cancel();
+    }
+
+    void setPagedPoints(float[] xs, float[] ys, int count) {
+        setPoints(xs, ys, 0, count);
+    }
+
+    /**
+     * Notifies listeners that data source has new points for the range.
+     */
+    void notifyDataChanged(float fromX, float toX) {
+        if (mListeners == null) return;
+        dispatchChanged(fromX, toX);
+    }
+
+    /**
+     * Adds points from coordinate buffers without creating {@link LinePoint} objects. All remaining values of buffers
+     * are read, buffer positions are not changed.
+     * 
+     * @param x
+     *            horizontal coordinates
+     * @param y
+     *            vertical coordinates
+     * @return this
+     * 
+     * @see #appendPoints(float[], float[], int, int)
+     */
+    public Line appendPoints(FloatBuffer x, FloatBuffer y) {
+        int count = x.remaining();
+        checkRange(count, y.remaining(), 0, count);
+        if (mCapacity > 0) {
+            beginUpdate();
+            for (int i = 0; i < count; i++) {
+                addSorted(x.get(x.position() + i), y.get(y.position() + i), null);
+            }
+            return endUpdate();
+        }
+        ensureCapacity(mSize + count);
+        x.duplicate().get(mXs, mSize, count);
+        y.duplicate().get(mYs, mSize, count);
+        commitAppended(count);
+        return this;
+    }
+
+    private static void checkRange(int xLength, int yLength, int offset, int count) {
+        if (offset < 0 || count < 0 || offset + count > xLength || offset + count > yLength) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", count: " + count + ", lengths: " + xLength
+                                                + ", " + yLength);
+        }
+    }
+
+    /**
+     * Makes <i>count</i> values copied after the end of columns a part of the line. One pass checks order and updates
+     * bounds, then points are either appended to the path or sorted and merged.
+     */
+    private void commitAppended(int count) {
+        int start = mSize;
+        int end = start + count;
+        boolean sorted = true;
+        for (int i = start; i < end; i++) {
+            if (i > start && mXs[i] < mXs[i - 1]) sorted = false;
+            if (mYs[i] < mMinY) mMinY = mYs[i];
+            if (mYs[i] > mMaxY) mMaxY = mYs[i];
+        }
+        if (count == 0) return;
+        float minX = mXs[start];
+        for (int i = start + 1; i < end; i++) {
+            if (mXs[i] < minX) minX = mXs[i];
+        }
+        if (sorted && (start == 0 || mXs[start] >= mXs[start - 1])) {
+            if (mPyramid != null && mPyramid.isValid()) {
+                while (mSize < end) {
+                    mSize++;
+                    mPyramid.append(this);
+                }
+            }
+            mSize = end;
+            if (!appendToPath(start)) invalidatePath();
+            notifyChanged(start - 1, end - 1);
+            return;
+        }
+        if (!sorted) sortByX(mXs, mYs, start, end);
+        mergeTail(start, count);
+        if (mPyramid != null) mPyramid.invalidate();
+        invalidatePath();
+        // segments from the point before the first merged one to the end could change
+        notifyChanged(lowerBound(minX) - 1, mSize - 1);
+    }
+
+    /**
+     * Merges sorted tail of <i>count</i> points at <i>start</i> into sorted points before it. Existing points stay
+     * before new ones with the same horizontal coordinate, as with {@link #addPoint(float, float)}.
+     */
+    private void mergeTail(int start, int count) {
+        float[] tailX = Arrays.copyOfRange(mXs, start, start + count);
+        float[] tailY = Arrays.copyOfRange(mYs, start, start + count);
+        int i = start - 1;
+        int j = count - 1;
+        int k = start + count - 1;
+        while (j >= 0) {
+            if (i >= 0 && mXs[i] > tailX[j]) {
+                mXs[k] = mXs[i];
+                mYs[k] = mYs[i];
+                if (mAttached != null) mAttached[k] = mAttached[i];
+                if (mStyleIds != null) mStyleIds[k] = mStyleIds[i];
+                i--;
+            } else {
+                mXs[k] = tailX[j];
+                mYs[k] = tailY[j];
+                clearSideTables(k);
+                j--;
+            }
+            k--;
+        }
+        mSize = start + count;
+    }
+
+    /**
+     * Stable bottom-up merge sort of points in [from, to) by horizontal coordinate.
+     */
+    private static void sortByX(float[] xs, float[] ys, int from, int to) {
+        int n = to - from;
+        float[] srcX = xs, srcY = ys;
+        float[] dstX = new float[n], dstY = new float[n];
+        int srcOffset = from, dstOffset = 0;
+        for (int width = 1; width < n; width <<= 1) {
+            for (int low = 0; low < n; low += width << 1) {
+                int mid = Math.min(low + width, n);
+                int high = Math.min(low + (width << 1), n);
+                int i = low, j = mid, k = low;
+                while (i < mid || j < high) {
+                    if (j >= high || (i < mid && srcX[srcOffset + i] <= srcX[srcOffset + j])) {
+                        dstX[dstOffset + k] = srcX[srcOffset + i];
+                        dstY[dstOffset + k] = srcY[srcOffset + i];
+                        i++;
+                    } else {
+                        dstX[dstOffset + k] = srcX[srcOffset + j];
+                        dstY[dstOffset + k] = srcY[srcOffset + j];
+                        j++;
+                    }
+                    k++;
+                }
+            }
+            float[] tmp = srcX;
+            srcX = dstX;
+            dstX = tmp;
+            tmp = srcY;
+            srcY = dstY;
+            dstY = tmp;
+            int tmpOffset = srcOffset;
+            srcOffset = dstOffset;
+            dstOffset = tmpOffset;
+        }
+        if (srcX != xs) {
+            System.arraycopy(srcX, srcOffset, xs, from, n);
+            System.arraycopy(srcY, srcOffset, ys, from, n);
+        }
+    }
+
+    /**
+     * Adds the point to the line keeping points sorted by horizontal coordinate.
+     * 
+     * @param point
+     *            the point
+     * @return this
+     */
+    public Line addPoint(LinePoint point) {
+        addSorted(point.getX(), point.getY(), point);
+        return this;
+    }
+
+    /**
+     * Adds the point to the line keeping points sorted by horizontal coordinate. No {@link LinePoint} is created for
+     * it until it is requested by {@link #getPoint(int)}.
+     * 
+     * @param x
+     *            horizontal coordinate
+     * @param y
+     *            vertical coordinate
+     * @return this
+     */
+    public Line addPoint(float x, float y) {
+        addSorted(x, y, null);
+        return this;
+    }
+
+    /**
+     * Inserts the point keeping points sorted and updates path.
+     * 
+     * @return index of inserted point
+     */
+    private int addSorted(float x, float y, LinePoint point) {
+        int index = insert(upperBound(x), x, y, point);
+        // appending to the end: extend existing path with the new segment only
+        if (index != mSize - 1 || !appendToPath(index)) invalidatePath();
+        return index;
+    }
+
+    /**
+     * Binary search for insertion index after all points with horizontal coordinate not greater than <i>x</i>.
+     */
+    int upperBound(float x) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mXs[phys(mid)] <= x) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for index of the first point with horizontal coordinate not less than <i>x</i>.
+     */
+    int lowerBound(float x) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mXs[phys(mid)] < x) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Removes the point.
+     * 
+     * @param point
+     *            point from line
+     * @return this
+     */
+    public Line removePoint(LinePoint point) {
+        int index = indexOf(point);
+        if (index >= 0) removePoint(index);
+        return this;
+    }
+
+    /**
+     * Removes the point by index.
+     * 
+     * @param index
+     *            index of the point
+     * @return this
+     */
+    public Line removePoint(int index) {
+        if (index < 0 || index >= mSize) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        notifyChanged(index - 1, index + 1);
+        LinePoint removed = getAttachedPoint(index);
+        if (removed != null) removed.detach();
+        unwrap();
+        removeFromBounds(mYs[index]);
+        if (mPyramid != null) mPyramid.invalidate();
+        int moved = mSize - index - 1;
+        if (moved > 0) copyPoints(index + 1, index, moved);
+        mSize--;
+        clearSideTables(mSize);
+        invalidatePath();
+        return this;
+    }
+
+    private int indexOf(LinePoint point) {
+        int index = indexOf(point.getX(), point.getY(), point);
+        if (index < 0 && mAttached != null) {
+            // coordinates of the point object were changed after it was added
+            for (int i = 0; i < mSize; i++) {
+                if (mAttached[phys(i)] == point) return i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Finds index of the point with given coordinates. If <i>point</i> is not null, the point attached to this index
+     * is preferred.
+     */
+    private int indexOf(float x, float y, LinePoint point) {
+        int found = -1;
+        for (int i = lowerBound(x); i < mSize && getX(i) == x; i++) {
+            LinePoint attached = getAttachedPoint(i);
+            if (point != null && attached == point) return i;
+            if (found < 0 && getY(i) == y && (point == null || attached == null)) found = i;
+        }
+        return found;
+    }
+
+    /**
+     * Gets the point by index. If there is no {@link LinePoint} for this index yet, it is created and kept by the line,
+     * so changes of its style are visible on the chart.
+     * 
+     * @param index
+     *            index of the point
+     * @return point with <i>index</i>
+     */
+    public LinePoint getPoint(int index) {
+        if (index < 0 || index >= mSize) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        LinePoint point = getAttachedPoint(index);
+        if (point == null) {
+            point = createPoint(index);
+            attach(index, point);
+        }
+        return point;
+    }
+
+    private LinePoint createPoint(int index) {
+        PointStyle style = getPointStyle(index);
+        LinePoint point = new LinePoint(displayMetrics, getX(index), getY(index));
+        if (style != null) point.setStyle(style).setVisible(true);
+        return point;
+    }
+
+    /**
+     * Attaches point returned by {@link #getPoints()} when it is changed first time.
+     */
+    void attachPoint(LinePoint point) {
+        // index without own object is preferred among equal points
+        int index = indexOf(point.getX(), point.getY(), point);
+        if (index >= 0) attach(index, point);
+        else point.detach();
+    }
+
+    /**
+     * Reports change of look of the point kept by the line.
+     */
+    void onPointChanged(LinePoint point) {
+        int index = indexOf(point);
+        if (index >= 0) notifyChanged(index, index);
+    }
+
+    /**
+     * Moves the point kept by the line to new coordinates. Point is inserted again, so points stay sorted.
+     */
+    void movePoint(LinePoint point, float x, float y) {
+        int index = indexOf(point);
+        if (index < 0) {
+            point.detach();
+            return;
+        }
+        if (getX(index) == x && getY(index) == y) return;
+        beginUpdate();
+        if ((index == 0 || getX(index - 1) <= x) && (index == mSize - 1 || getX(index + 1) >= x)) {
+            // order is kept, columns are changed in place
+            notifyChanged(index - 1, index + 1);
+            int p = phys(index);
+            removeFromBounds(mYs[p]);
+            mXs[p] = x;
+            mYs[p] = y;
+            if (isBoundsValid) {
+                if (y < mMinY) mMinY = y;
+                if (y > mMaxY) mMaxY = y;
+            }
+            if (mPyramid != null) mPyramid.invalidate();
+            invalidatePath();
+            notifyChanged(index - 1, index + 1);
+        } else {
+            removePoint(index);
+            addSorted(x, y, point);
+        }
+        endUpdate();
+    }
+
+    /**
+     * Gets the point by index without creating it.
+     * 
+     * @param index
+     *            index of the point
+     * @return point or null if it was never requested or added as object
+     */
+    LinePoint getAttachedPoint(int index) {
+        return mAttached == null ? null : mAttached[phys(index)];
+    }
+
+    /**
+     * Sets style of markers for points without own style. Markers are not drawn for them if style is null.
+     * 
+     * @param style
+     *            shared style or null
+     * @return this
+     */
+    public Line setPointStyle(PointStyle style) {
+        mPointStyle = style;
+        notifyChanged();
+        return this;
+    }
+
+    /**
+     * Sets own marker style of the point. Only style index is stored for the point, so many points may share few
+     * styles without creating {@link LinePoint} objects.
+     * 
+     * @param index
+     *            index of the point
+     * @param style
+     *            shared style or null to use style of the line
+     * @return this
+     * 
+     * @see #setPointStyle(PointStyle)
+     */
+    public Line setPointStyle(int index, PointStyle style) {
+        if (index < 0 || index >= mSize) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        int id = 0;
+        if (style != null) {
+            id = mStyles.indexOf(style) + 1;
+            if (id == 0) {
+                if (mStyles.size() == 255) throw new IllegalStateException("Too many point styles in line");
+                mStyles.add(style);
+                id = mStyles.size();
+            }
+        }
+        if (mStyleIds == null) {
+            if (id == 0) return this;
+            mStyleIds = new byte[mXs.length];
+        }
+        mStyleIds[phys(index)] = (byte) id;
+        notifyChanged(index, index);
+        LinePoint point = getAttachedPoint(index);
+        if (point != null) {
+            style = getPointStyle(index);
+            if (style != null) point.setStyle(style);
+            point.setVisible(style != null);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the point with own marker style.
+     * 
+     * @param x
+     *            horizontal coordinate
+     * @param y
+     *            vertical coordinate
+     * @param style
+     *            shared style
+     * @return this
+     * 
+     * @see #setPointStyle(int, PointStyle)
+     */
+    public Line addPoint(float x, float y, PointStyle style) {
+        return setPointStyle(addSorted(x, y, null), style);
+    }
+
+    void addOnChangeListener(OnChangeListener listener) {
+        if (mListeners == null) mListeners = new ArrayList<OnChangeListener>();
+        if (!mListeners.contains(listener)) mListeners.add(listener);
+    }
+
+    void removeOnChangeListener(OnChangeListener listener) {
+        if (mListeners != null) mListeners.remove(listener);
+    }
+
+    /**
+     * Notifies listeners about change of drawing between points, indexes are clamped to existing points.
+     */
+    private void notifyChanged(int fromIndex, int toIndex) {
+        if (mListeners == null || mListeners.isEmpty() || mSize == 0) return;
+        // spline through changed points bends a few segments around them
+        if (mSmoothSubPoints > 0) {
+            fromIndex -= 3;
+            toIndex += 3;
+        }
+        float fromX = getX(Math.max(fromIndex, 0));
+        float toX = getX(Math.min(Math.max(toIndex, 0), mSize - 1));
+        dispatchChanged(fromX, toX);
+    }
+
+    /**
+     * Notifies listeners about change of the whole line.
+     */
+    private void notifyChanged() {
+        mStyleVersion++;
+        if (mListeners == null) return;
+        dispatchChanged(-Float.MAX_VALUE, Float.MAX_VALUE);
+    }
+
+    private void dispatchChanged(float fromX, float toX) {
+        if (mUpdateDepth > 0) {
+            // reported once by endUpdate
+            mPendingFromX = Math.min(mPendingFromX, fromX);
+            mPendingToX = Math.max(mPendingToX, toX);
+            return;
+        }
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).onLineChanged(this, fromX, toX);
+        }
+    }
+
+    /**
+     * Starts batch update. Until the matching {@link #endUpdate()} changes are not reported to views, so they redraw
+     * and rebuild caches once for all of them. Paths are rebuilt lazily on next drawing anyway. Batches may be nested,
+     * changes are reported by the outermost one. Must be called on UI thread.
+     * 
+     * @return this
+     * 
+     * @see #batch(Runnable)
+     */
+    public Line beginUpdate() {
+        mUpdateDepth++;
+        return this;
+    }
+
+    /**
+     * Ends batch update started by {@link #beginUpdate()}. The outermost call reports all changes made in the batch as
+     * one range.
+     * 
+     * @return this
+     * @throws IllegalStateException
+     *             if there is no batch update
+     */
+    public Line endUpdate() {
+        if (mUpdateDepth == 0) throw new IllegalStateException("endUpdate() without beginUpdate()");
+        if (--mUpdateDepth > 0 || mPendingFromX > mPendingToX) return this;
+        float fromX = mPendingFromX;
+        float toX = mPendingToX;
+        mPendingFromX = Float.MAX_VALUE;
+        mPendingToX = -Float.MAX_VALUE;
+        if (mListeners != null) dispatchChanged(fromX, toX);
+        return this;
+    }
+
+    /**
+     * Runs the changes as one batch update, the batch is ended even if they throw.
+     * 
+     * @param changes
+     *            code changing the line
+     * @return this
+     * 
+     * @see #beginUpdate()
+     */
+    public Line batch(Runnable changes) {
+        beginUpdate();
+        try {
+            changes.run();
+        } finally {
+            endUpdate();
+        }
+        return this;
+    }
+
+    /**
+     * @return true if path is smoothed by spline
+     */
+    boolean isSmoothed() {
+        return mSmoothSubPoints > 0 && mSize > 3;
+    }
+
+    /**
+     * Gets the largest distance from the point center to the edge of its marker for styles of the line. Styles of
+     * {@link LinePoint} objects are not counted.
+     * 
+     * @return radius plus stroke width in pixels
+     */
+    float getPointStyleExtent() {
+        float extent = 0;
+        if (mPointStyle != null) extent = mPointStyle.getRadius() + mPointStyle.getStrokePaint().getStrokeWidth();
+        for (int i = 0; i < mStyles.size(); i++) {
+            PointStyle style = mStyles.get(i);
+            extent = Math.max(extent, style.getRadius() + style.getStrokePaint().getStrokeWidth());
+        }
+        return extent;
+    }
+
+    /**
+     * Gets marker style of the point without creating {@link LinePoint}.
+     * 
+     * @param index
+     *            index of the point
+     * @return style or null if marker is not drawn
+     */
+    public PointStyle getPointStyle(int index) {
+        LinePoint point = getAttachedPoint(index);
+        if (point != null) return point.isVisible() ? point.getStyle() : null;
+        int id = mStyleIds == null ? 0 : mStyleIds[phys(index)] & 0xff;
+        return id == 0 ? mPointStyle : mStyles.get(id - 1);
+    }
+
+    /**
+     * Gets the point with coords.
+     * 
+     * @param x
+     *            x
+     * @param y
+     *            y
+     * @return point
+     */
+    public LinePoint getPoint(float x, float y) {
+        int index = indexOf(x, y, null);
+        return index < 0 ? null : getPoint(index);
+    }
+
+    /**
+     * Gets horizontal coordinate of the point without creating {@link LinePoint}.
+     * 
+     * @param index
+     *            index of the point
+     * @return horizontal coordinate
+     */
+    public float getX(int index) {
+        return mXs[phys(index)];
+    }
+
+    /**
+     * Gets vertical coordinate of the point without creating {@link LinePoint}.
+     * 
+     * @param index
+     *            index of the point
+     * @return vertical coordinate
+     */
+    public float getY(int index) {
+        return mYs[phys(index)];
+    }
+
+    /**
+     * Points count.
+     * 
+     * @return count
+     */
+    public int getPointsCount() {
+        return mSize;
+    }
+
+    /**
+     * Limits count of points in the line. Line with capacity works as ring buffer for sliding-window live data: adding
+     * a point to the full line evicts the oldest one in constant time without allocations. If the line already has
+     * more points, only the latest <i>capacity</i> points are kept.
+     * 
+     * @param capacity
+     *            maximal count of points, 0 for unlimited line
+     * @return this
+     */
+    public Line setCapacity(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        unwrap();
+        if (capacity > 0 && mSize > capacity) {
+            int dropped = mSize - capacity;
+            notifyChanged(0, dropped);
+            copyPoints(dropped, 0, capacity);
+            for (int i = capacity; i < mSize; i++) {
+                clearSideTables(i);
+            }
+            mSize = capacity;
+            isBoundsValid = false;
+            if (mPyramid != null) mPyramid.invalidate();
+            invalidatePath();
+        }
+        resizeColumns(capacity > 0 ? capacity : Math.max(mSize, INITIAL_CAPACITY));
+        mCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * @return maximal count of points or 0 if the line is unlimited
+     * 
+     * @see #setCapacity
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return minimal horizontal coordinate of points, undefined for empty line
+     */
+    public float getMinX() {
+        return mSize == 0 ? Float.MAX_VALUE : mXs[mHead];
+    }
+
+    /**
+     * @return maximal horizontal coordinate of points, undefined for empty line
+     */
+    public float getMaxX() {
+        return mSize == 0 ? -Float.MAX_VALUE : mXs[phys(mSize - 1)];
+    }
+
+    /**
+     * @return minimal vertical coordinate of points, undefined for empty line
+     */
+    public float getMinY() {
+        if (!isBoundsValid) updateBounds();
+        return mMinY;
+    }
+
+    /**
+     * @return maximal vertical coordinate of points, undefined for empty line
+     */
+    public float getMaxY() {
+        if (!isBoundsValid) updateBounds();
+        return mMaxY;
+    }
+
+    /**
+     * Bounds are rescanned only if removed value was one of them.
+     */
+    private void removeFromBounds(float y) {
+        if (y <= mMinY || y >= mMaxY) isBoundsValid = false;
+    }
+
+    private void updateBounds() {
+        mMinY = Float.MAX_VALUE;
+        mMaxY = -Float.MAX_VALUE;
+        for (int i = 0; i < mSize; i++) {
+            float y = mYs[phys(i)];
+            if (y < mMinY) mMinY = y;
+            if (y > mMaxY) mMaxY = y;
+        }
+        isBoundsValid = true;
     }
 
     /**
@@ -250,6 +1783,7 @@ public class Line {
      */
     public Line setPaint(Paint paint) {
         this.mPaint = paint;
+        notifyChanged();
         return this;
     }
 
@@ -262,7 +1796,8 @@ public class Line {
      */
     public Line setFilled(boolean isFilled) {
         this.isFilled = isFilled;
-        buildPath();
+        isFilledPathValid = false;
+        notifyChanged();
         return this;
     }
 
@@ -291,6 +1826,7 @@ public class Line {
      */
     public Line setFilledPaint(Paint paint) {
         this.mFilledPaint = paint;
+        notifyChanged();
         return this;
     }
 
@@ -303,6 +1839,7 @@ public class Line {
      */
     public Line setColor(int color) {
         getPaint().setColor(color);
+        notifyChanged();
         return this;
     }
 
@@ -315,6 +1852,7 @@ public class Line {
      */
     public Line setFilledColor(int color) {
         mFilledPaint.setColor(color);
+        notifyChanged();
         return this;
     }
 
@@ -327,6 +1865,7 @@ public class Line {
      */
     public Line setPathEffect(PathEffect pe) {
         mPaint.setPathEffect(pe);
+        notifyChanged();
         return this;
     }
 
@@ -339,6 +1878,7 @@ public class Line {
      */
     public Line setStrokeWidth(float widthDp) {
         mPaint.setStrokeWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, widthDp, displayMetrics));
+        notifyChanged();
         return this;
     }
 
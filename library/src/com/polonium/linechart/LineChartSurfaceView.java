@@ -0,0 +1,332 @@
+package com.polonium.linechart;
+
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import com.polonium.linechart.LineChartView.OnChartPointClickListener;
+
+/**
+ * Chart drawn on a dedicated render thread, so heavy lines don't block UI thread. The view wraps a
+ * {@link LineChartView} which is changed, touched and drawn only on that thread. Frames are drawn with vsync pacing
+ * into the dirty part of the surface. Changes of the chart and its lines must be made inside {@link #queueEvent}, points
+ * may be offered from any thread by {@link Line#offerPoint}. The thread runs while the view is attached to a window.
+ * Attributes are the same as of {@link LineChartView}.
+ */
+public class LineChartSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    private final SurfaceRenderer mRenderer;
+    private HandlerThread mThread;
+    private volatile Handler mRenderHandler;
+    private final ArrayList<Runnable> mPendingEvents = new ArrayList<Runnable>();
+    private final Object mSurfaceLock = new Object();
+    private boolean hasSurface = false;
+    private volatile int mBackgroundColor = 0xFFFFFFFF;
+    private final Rect mDirty = new Rect();
+    private boolean isFrameScheduled = false;
+    private Object mFrameCallback;
+    private final Runnable mDrawFrame = new Runnable() {
+        @Override
+        public void run() {
+            drawFrame();
+        }
+    };
+
+    /**
+     * Instantiates a new line chart surface view.
+     *
+     * @param context
+     *            the context of activity
+     */
+    public LineChartSurfaceView(Context context) {
+        super(context);
+        mRenderer = new SurfaceRenderer(this, context);
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Instantiates a new line chart surface view.
+     *
+     * @param context
+     *            the context
+     * @param attrs
+     *            the attrs
+     */
+    public LineChartSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mRenderer = new SurfaceRenderer(this, context, attrs);
+        getHolder().addCallback(this);
+    }
+
+    public LineChartSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mRenderer = new SurfaceRenderer(this, context, attrs);
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Gets the chart drawn by this view. It may be used only inside runnables passed to {@link #queueEvent}.
+     *
+     * @return the chart
+     */
+    public LineChartView getChart() {
+        return mRenderer;
+    }
+
+    /**
+     * Runs the action on the render thread. Changes of the chart and lines added to it must be made this way. Actions
+     * queued while the view is detached run after it is attached.
+     *
+     * @param action
+     *            the action
+     */
+    public void queueEvent(Runnable action) {
+        synchronized (this) {
+            if (mRenderHandler == null) {
+                mPendingEvents.add(action);
+                return;
+            }
+            mRenderHandler.post(action);
+        }
+    }
+
+    /**
+     * Adds the line for drawing on the render thread.
+     *
+     * @param line
+     *            {@link com.polonium.linechart.Line Line}, not changed on other threads after this call
+     *
+     * @see LineChartView#addLine
+     */
+    public void addLine(final Line line) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.addLine(line);
+            }
+        });
+    }
+
+    /**
+     * Removes all lines on the render thread.
+     *
+     * @see LineChartView#removeAllLines
+     */
+    public void removeAllLines() {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.removeAllLines();
+            }
+        });
+    }
+
+    /**
+     * Sets ViewPort on the render thread.
+     *
+     * @see LineChartView#setViewPort
+     */
+    public void setViewPort(final float left, final float bottom, final float right, final float top) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setViewPort(left, bottom, right, top);
+            }
+        });
+    }
+
+    /**
+     * Sets the listener for chart point click. It is called on the render thread, so the point and its line may be
+     * changed right in the listener and are redrawn after it returns. Views of UI must be changed through a handler of
+     * the main thread.
+     *
+     * @param listener
+     *            new on point click listener
+     */
+    public void setOnPointClickListener(final OnChartPointClickListener listener) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setOnPointClickListener(listener);
+            }
+        });
+    }
+
+    /**
+     * Sets color the surface is cleared with before drawing.
+     *
+     * @param color
+     *            background color, white by default
+     */
+    public void setChartBackgroundColor(int color) {
+        mBackgroundColor = color;
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.invalidate();
+            }
+        });
+    }
+
+    /**
+     * @return color the surface is cleared with before drawing
+     */
+    public int getChartBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        // events are recycled by the framework after this call
+        final MotionEvent copy = MotionEvent.obtain(event);
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.onTouchEvent(copy);
+                copy.recycle();
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        synchronized (mSurfaceLock) {
+            hasSurface = true;
+        }
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, final int width, final int height) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.setSize(width, height);
+                // new buffers have no previous content
+                requestRender(0, 0, width, height);
+            }
+        });
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // waits for the frame being drawn
+        synchronized (mSurfaceLock) {
+            hasSurface = false;
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        synchronized (this) {
+            mThread = new HandlerThread("LineChartRender", Process.THREAD_PRIORITY_DISPLAY);
+            mThread.start();
+            mRenderHandler = new Handler(mThread.getLooper());
+            for (int i = 0; i < mPendingEvents.size(); i++) {
+                mRenderHandler.post(mPendingEvents.get(i));
+            }
+            mPendingEvents.clear();
+            mRenderHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mRenderer.attach();
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        synchronized (this) {
+            if (mThread == null) return;
+            final HandlerThread thread = mThread;
+            mRenderHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mRenderer.release();
+                    if (mFrameCallback != null && isFrameScheduled) {
+                        Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+                    }
+                    isFrameScheduled = false;
+                    mFrameCallback = null;
+                    thread.quit();
+                }
+            });
+            mThread = null;
+            mRenderHandler = null;
+        }
+    }
+
+    /**
+     * @return handler of the render thread or null while the view is detached, work for the thread is dropped then
+     */
+    Handler getRenderHandler() {
+        return mRenderHandler;
+    }
+
+    /**
+     * Adds the region to the next frame and schedules it. Must be called on the render thread.
+     */
+    void requestRender(int left, int top, int right, int bottom) {
+        mDirty.union(left, top, right, bottom);
+        if (isFrameScheduled) return;
+        isFrameScheduled = true;
+        if (Build.VERSION.SDK_INT >= 16) {
+            if (mFrameCallback == null) mFrameCallback = new FrameCallback(mDrawFrame);
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+        } else {
+            Handler handler = mRenderHandler;
+            // the thread is stopping, nothing is drawn anymore
+            if (handler == null) isFrameScheduled = false;
+            else handler.post(mDrawFrame);
+        }
+    }
+
+    private void drawFrame() {
+        isFrameScheduled = false;
+        if (mDirty.isEmpty()) return;
+        synchronized (mSurfaceLock) {
+            if (!hasSurface) return;
+            SurfaceHolder holder = getHolder();
+            // surface may enlarge the region, the canvas is clipped to the final one
+            Canvas canvas = holder.lockCanvas(mDirty);
+            if (canvas == null) return;
+            try {
+                canvas.drawColor(mBackgroundColor);
+                mRenderer.onDraw(canvas);
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+        mDirty.setEmpty();
+    }
+
+    /**
+     * Separate class, so {@link Choreographer} isn't touched on older versions.
+     */
+    private static final class FrameCallback implements Choreographer.FrameCallback {
+        private final Runnable mFrame;
+
+        FrameCallback(Runnable frame) {
+            mFrame = frame;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrame.run();
+        }
+    }
+}
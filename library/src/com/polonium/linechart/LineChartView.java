@@ -3,26 +3,25 @@ package com.polonium.linechart;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import com.polonium.linechart.LinePoint.Type;
 import com.polonium.linechart.R;
 
 import android.content.Context;
 import android.content.res.TypedArray;
-import android.graphics.Bitmap;
-import android.graphics.Bitmap.Config;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
-import android.graphics.Path;
-import android.graphics.Shader;
+import android.graphics.PaintFlagsDrawFilter;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 
@@ -31,6 +30,8 @@ import android.view.ViewConfiguration;
  */
 public class LineChartView extends View {
 
+    private static final int MAX_MARKER_BATCHES = 32;
+
     private float mTouchSlop = 10;
     private ArrayList<Line> mLines = new ArrayList<Line>();
     private float mViewPortLeft = 0;
@@ -38,30 +39,100 @@ public class LineChartView extends View {
     private float mViewPortTop = 0;
     private float mViewPortBottom = 0;
     private float mViewPortMarginLeft, mViewPortMarginRight, mViewPortMarginTop, mViewPortMarginBottom;
-    private Shader cropViewPortShader;
-    private Shader cropHorValuesShader;
-    private Shader cropVerValuesShader;
     private ChartGrid mGrid;
     private float mLastX = Integer.MAX_VALUE;
     private float mLastY = Integer.MAX_VALUE;
     private float mScaleX;
     private float mScaleY;
-    private Matrix mMatrix = new Matrix();
-    private float mMaxX = Float.MIN_VALUE;
-    private float mMaxY = Float.MIN_VALUE;
+    private float mMaxX = -Float.MAX_VALUE;
+    private float mMaxY = -Float.MAX_VALUE;
     private float mMinX = Float.MAX_VALUE;
     private float mMinY = Float.MAX_VALUE;
+    private float mLimitsViewPortLeft = Float.NaN;
+    private float mLimitsViewPortRight = Float.NaN;
+    private float mLimitsViewPortTop = Float.NaN;
+    private float mLimitsViewPortBottom = Float.NaN;
     private float mViewPortHorFreedom = 0;
     private float mViewPortVerFreedom = 0;
-    private float velocityX = 0;
-    private float velocityY = 0;
-    private float frictionX = 1;
-    private float frictionY = 1;
-    private float mFrictionForceX = 10;
-    private float mFrictionForceY = 10;
-    private boolean isMovingX = false;
-    private boolean isMovingY = false;
+    private FlingEngine mFling;
+    private VelocityTracker mVelocityTracker;
+    private int mMinFlingVelocity;
+    private int mMaxFlingVelocity;
+    private int mDraftQuality = DraftQuality.DEFAULT;
+    private long mDraftIdleDelay = 150;
+    private boolean isDraft = false;
+    private final PaintFlagsDrawFilter mDraftFilter = new PaintFlagsDrawFilter(Paint.ANTI_ALIAS_FLAG, 0);
+    private final Runnable mSettleDraft = new Runnable() {
+        @Override
+        public void run() {
+            if (mFling.isFlingingX() || mFling.isFlingingY()) {
+                postDelayed(this, mDraftIdleDelay);
+                return;
+            }
+            isDraft = false;
+            invalidatePlot();
+        }
+    };
     private float pointClickRadius;
+    private float mCullingMargin;
+    private ArrayList<MarkerBatch> mMarkerBatches = new ArrayList<MarkerBatch>();
+    private MarkerBatch mLastMarkerBatch;
+    private TileCache mTileCache;
+    private long mTileCacheBudget = 8L * 1024 * 1024;
+    private final Line.OnChangeListener mLineListener = new Line.OnChangeListener() {
+        @Override
+        public void onLineChanged(Line line, float fromX, float toX) {
+            if (mUpdateDepth > 0) {
+                mPendingFromX = Math.min(mPendingFromX, fromX);
+                mPendingToX = Math.max(mPendingToX, toX);
+            } else if (mTileCache != null) {
+                mTileCache.invalidate(fromX, toX);
+            }
+            invalidateRange(line, fromX, toX);
+        }
+    };
+    private final Rect mDirtyRect = new Rect();
+    private int mUpdateDepth = 0;
+    private final Rect mPendingDirty = new Rect();
+    private boolean isLimitsPending = false;
+    private boolean isTilesPending = false;
+    private float mPendingFromX = Float.MAX_VALUE;
+    private float mPendingToX = -Float.MAX_VALUE;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean isDrainPosted = new AtomicBoolean();
+    private final Runnable mDrainSamples = new Runnable() {
+        @Override
+        public void run() {
+            isDrainPosted.set(false);
+            beginUpdate();
+            for (int i = 0; i < mLines.size(); i++) {
+                mLines.get(i).drainSamples();
+            }
+            endUpdate();
+        }
+    };
+    private final Runnable mScheduleDrain = new Runnable() {
+        @Override
+        public void run() {
+            // drained right before drawing of the next frame
+            if (Build.VERSION.SDK_INT >= 16) postOnAnimation(mDrainSamples);
+            else mDrainSamples.run();
+        }
+    };
+    private final Runnable mSampleListener = new Runnable() {
+        @Override
+        public void run() {
+            // called on producer threads
+            if (!isDrainPosted.compareAndSet(false, true)) return;
+            Handler handler = getModelHandler();
+            // samples are drained by attach() if the thread of the model isn't running
+            if (handler == null || !handler.post(mScheduleDrain)) isDrainPosted.set(false);
+        }
+    };
+    private float mDrawnViewPortLeft = Float.NaN;
+    private float mDrawnViewPortRight = Float.NaN;
+    private float mDrawnViewPortTop = Float.NaN;
+    private float mDrawnViewPortBottom = Float.NaN;
 
     private OnChartPointClickListener mListener;
 
@@ -193,12 +264,25 @@ public class LineChartView extends View {
         setPointClickRadius(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                                                       20,
                                                       getResources().getDisplayMetrics()));
-        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        setCullingMarginDP(48);
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        mFling = new FlingEngine(this, new FlingEngine.Callback() {
+            @Override
+            public void onFlingStep(int deltaX, int deltaY) {
+                moveViewPort(deltaX / mScaleX, deltaY / mScaleY);
+                invalidateViewPort();
+                settleDraft();
+            }
+        });
         setViewPort(0, 0, 100, 100);
     }
 
     /**
-     * Sets the stopping force for inertial scrolling.
+     * Sets the stopping force for inertial scrolling. Deceleration is applied per unit of time, 10 matches friction of
+     * system scrolling views.
      * 
      * @param fx
      *            the horizontal resistance
@@ -206,8 +290,7 @@ public class LineChartView extends View {
      *            the vertical resistance
      */
     public void setFriction(float fx, float fy) {
-        mFrictionForceX = Math.abs(fx);
-        mFrictionForceY = Math.abs(fy);
+        mFling.setFriction(Math.abs(fx), Math.abs(fy));
     }
 
     /**
@@ -237,6 +320,7 @@ public class LineChartView extends View {
     public void setVerticalGridStyle(Paint main, Paint sub) {
         if (main != null) mGrid.mainVerLinesPaint = main;
         if (sub != null) mGrid.subVerLinesPaint = sub;
+        invalidateTiles();
     }
 
     /**
@@ -252,6 +336,7 @@ public class LineChartView extends View {
     public void setHorizontalGridStyle(Paint main, Paint sub) {
         if (main != null) mGrid.mainHorLinesPaint = main;
         if (sub != null) mGrid.subHorLinesPaint = sub;
+        invalidateTiles();
     }
 
     /**
@@ -267,6 +352,7 @@ public class LineChartView extends View {
     public void enableVerticalGrid(boolean main, boolean sub) {
         mGrid.verMainLinesEnabled = main;
         mGrid.verSubLinesEnabled = sub;
+        invalidateTiles();
     }
 
     /**
@@ -282,6 +368,7 @@ public class LineChartView extends View {
     public void enableHorizontalGrid(boolean main, boolean sub) {
         mGrid.horMainLinesEnabled = main;
         mGrid.horSubLinesEnabled = sub;
+        invalidateTiles();
     }
 
     /**
@@ -306,6 +393,7 @@ public class LineChartView extends View {
         mGrid.stepVer = verStep;
         mGrid.horSubLinesCount = horSubLinesCount;
         mGrid.verSubLinesCount = verSubLinesCount;
+        invalidateTiles();
     }
 
     /**
@@ -358,7 +446,6 @@ public class LineChartView extends View {
         mGrid.horValuesMarginRight = right;
         mGrid.horValuesMarginTop = top;
         mGrid.horValuesMarginBottom = bottom;
-        cropHorValuesShader = null;
     }
 
     /**
@@ -380,7 +467,6 @@ public class LineChartView extends View {
         mGrid.verValuesMarginRight = right;
         mGrid.verValuesMarginTop = top;
         mGrid.verValuesMarginBottom = bottom;
-        cropVerValuesShader = null;
     }
 
     /**
@@ -410,7 +496,6 @@ public class LineChartView extends View {
         mGrid.horValuesMarginBottom = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                                                                       bottom,
                                                                       getResources().getDisplayMetrics());
-        cropHorValuesShader = null;
     }
 
     /**
@@ -440,33 +525,71 @@ public class LineChartView extends View {
         mGrid.verValuesMarginBottom = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                                                                       bottom,
                                                                       getResources().getDisplayMetrics());
-        cropVerValuesShader = null;
     }
 
     /**
      * Sets custom text for horizontal values. Use {@link android.util.SparseArray} for mapping grid value and text for
-     * it. If no text for value, grid line will drawn without text.
+     * it. If no text for value, grid line will drawn without text. Text is taken from the map once per value, set the
+     * map again after changing it.
      * 
      * @param map
      *            {@link android.util.SparseArray} with text for drawing. If <i>map</i> is not null text for lines
      *            taking from it. Else integer values from grid will be drawn.
-     * @see #setVerValuesText
+     * @see #setHorValuesFormatter
      */
     public void setHorValuesText(SparseArray<String> map) {
-        mGrid.horValuesText = map;
+        setHorValuesFormatter(map == null ? null : new SparseArrayFormatter(map));
     }
 
     /**
      * Sets custom text for vertical values. Use {@link android.util.SparseArray} for mapping grid value and text for
-     * it. If no text for value, grid line will drawn without text.
+     * it. If no text for value, grid line will drawn without text. Text is taken from the map once per value, set the
+     * map again after changing it.
      * 
      * @param map
      *            {@link android.util.SparseArray} with text for drawing. If <i>map</i> is not null text for lines
      *            taking from it. Else integer values from grid will be drawn.
-     * @see #setHorValuesText
+     * @see #setVerValuesFormatter
      */
     public void setVerValuesText(SparseArray<String> map) {
-        mGrid.verValuesText = map;
+        setVerValuesFormatter(map == null ? null : new SparseArrayFormatter(map));
+    }
+
+    /**
+     * Sets formatter of horizontal values. Text of every value is formatted once and cached.
+     * 
+     * @param formatter
+     *            formatter or null to draw integer values from grid
+     * @see #setVerValuesFormatter
+     */
+    public void setHorValuesFormatter(LabelFormatter formatter) {
+        mGrid.horLabels.setFormatter(formatter);
+        invalidate();
+    }
+
+    /**
+     * Sets formatter of vertical values. Text of every value is formatted once and cached.
+     * 
+     * @param formatter
+     *            formatter or null to draw integer values from grid
+     * @see #setHorValuesFormatter
+     */
+    public void setVerValuesFormatter(LabelFormatter formatter) {
+        mGrid.verLabels.setFormatter(formatter);
+        invalidate();
+    }
+
+    private static class SparseArrayFormatter implements LabelFormatter {
+        private final SparseArray<String> mMap;
+
+        SparseArrayFormatter(SparseArray<String> map) {
+            mMap = map;
+        }
+
+        @Override
+        public CharSequence format(int value) {
+            return mMap.get(value);
+        }
     }
 
     /**
@@ -476,10 +599,14 @@ public class LineChartView extends View {
      *
      */
     public void removeAllLines() {
-        while (mLines.size() > 0) {
-            mLines.remove(0);
+        for (Line line : mLines) {
+            line.removeOnChangeListener(mLineListener);
+            line.removeSampleListener(mSampleListener);
         }
-        postInvalidate();
+        mLines.clear();
+        invalidateTiles();
+        requestLimitsCorrection();
+        invalidatePlot();
     }
 
     /**
@@ -490,14 +617,13 @@ public class LineChartView extends View {
      */
     public void addLine(Line line) {
         mLines.add(line);
-        postInvalidate();
-
-        for (LinePoint point : line.getPoints()) {
-            mMaxX = point.getX() > mMaxX ? point.getX() : mMaxX;
-            mMaxY = point.getY() > mMaxY ? point.getY() : mMaxY;
-            mMinX = point.getX() < mMinX ? point.getX() : mMinX;
-            mMinY = point.getY() < mMinY ? point.getY() : mMinY;
-        }
+        line.addOnChangeListener(mLineListener);
+        line.addSampleListener(mSampleListener);
+        // points offered before the line was added
+        line.drainSamples();
+        invalidateTiles();
+        requestLimitsCorrection();
+        invalidatePlot();
     }
 
     /**
@@ -511,6 +637,8 @@ public class LineChartView extends View {
 
         try {
             Collections.swap(mLines, indexFirst, indexSecond);
+            invalidateTiles();
+            invalidatePlot();
         }
         catch (IndexOutOfBoundsException ie) {
             result = false;
@@ -535,33 +663,53 @@ public class LineChartView extends View {
 
         for (Line r : toRemove) {
             mLines.remove(r);
+            r.removeOnChangeListener(mLineListener);
+            r.removeSampleListener(mSampleListener);
         }
+        if (!toRemove.isEmpty()) invalidateTiles();
 
-        postInvalidate();
+        requestLimitsCorrection();
+        invalidatePlot();
 
         return toRemove.size();
     }
 
     /**
-     * Correct min and max values for ViewPort moving limits.
+     * Corrects limits now or at the end of batch update.
+     */
+    private void requestLimitsCorrection() {
+        if (mUpdateDepth > 0) isLimitsPending = true;
+        else limitsCorrection();
+    }
+
+    /**
+     * Correct min and max values for ViewPort moving limits. Lines keep their own bounds, so it costs O(lines).
      */
     private void limitsCorrection() {
-        mMaxX = Float.MIN_VALUE;
-        mMaxY = Float.MIN_VALUE;
+        mMaxX = -Float.MAX_VALUE;
+        mMaxY = -Float.MAX_VALUE;
         mMinX = Float.MAX_VALUE;
         mMinY = Float.MAX_VALUE;
-        for (Line line : mLines)
-            for (LinePoint point : line.getPoints()) {
-                mMaxX = point.getX() > mMaxX ? point.getX() : mMaxX;
-                mMaxY = point.getY() > mMaxY ? point.getY() : mMaxY;
-                mMinX = point.getX() < mMinX ? point.getX() : mMinX;
-                mMinY = point.getY() < mMinY ? point.getY() : mMinY;
+        for (Line line : mLines) {
+            // lines with data source can be moved over the whole source, not only loaded points
+            DataPager pager = line.getDataPager();
+            if (pager != null && pager.hasBounds()) {
+                mMaxX = pager.getMaxX() > mMaxX ? pager.getMaxX() : mMaxX;
+                mMinX = pager.getMinX() < mMinX ? pager.getMinX() : mMinX;
             }
+            if (line.getPointsCount() == 0) continue;
+            mMaxX = line.getMaxX() > mMaxX ? line.getMaxX() : mMaxX;
+            mMaxY = line.getMaxY() > mMaxY ? line.getMaxY() : mMaxY;
+            mMinX = line.getMinX() < mMinX ? line.getMinX() : mMinX;
+            mMinY = line.getMinY() < mMinY ? line.getMinY() : mMinY;
+        }
 
-        mMaxX = (mMaxX < mViewPortRight) ? mViewPortRight : mMaxX;
-        mMaxY = (mMaxY < mViewPortTop) ? mViewPortTop : mMaxY;
-        mMinX = (mMinX > mViewPortLeft) ? mViewPortLeft : mMinX;
-        mMinY = (mMinY > mViewPortBottom) ? mViewPortBottom : mMinY;
+        // ViewPort set explicitly stays reachable, positions reached by moving don't widen limits
+        if (Float.isNaN(mLimitsViewPortLeft)) return;
+        mMaxX = (mMaxX < mLimitsViewPortRight) ? mLimitsViewPortRight : mMaxX;
+        mMaxY = (mMaxY < mLimitsViewPortTop) ? mLimitsViewPortTop : mMaxY;
+        mMinX = (mMinX > mLimitsViewPortLeft) ? mLimitsViewPortLeft : mMinX;
+        mMinY = (mMinY > mLimitsViewPortBottom) ? mLimitsViewPortBottom : mMinY;
     }
 
     /**
@@ -599,6 +747,10 @@ public class LineChartView extends View {
         mViewPortRight = right;
         mViewPortTop = top;
         mViewPortBottom = bottom;
+        mLimitsViewPortLeft = left;
+        mLimitsViewPortRight = right;
+        mLimitsViewPortTop = top;
+        mLimitsViewPortBottom = bottom;
         limitsCorrection();
     }
 
@@ -620,7 +772,6 @@ public class LineChartView extends View {
         mViewPortMarginRight = right;
         mViewPortMarginTop = top;
         mViewPortMarginBottom = bottom;
-        cropViewPortShader = null;
         scaleCorrection();
     }
 
@@ -651,7 +802,6 @@ public class LineChartView extends View {
         mViewPortMarginBottom = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                                                           bottom,
                                                           getResources().getDisplayMetrics());
-        cropViewPortShader = null;
         scaleCorrection();
     }
 
@@ -687,23 +837,137 @@ public class LineChartView extends View {
         if (isInEditMode()) {
             return;
         }
-        inertionMove();
-        if (cropViewPortShader == null) {
-            Bitmap cropBitmap = Bitmap.createBitmap(getMeasuredWidth(), getMeasuredHeight(), Config.ALPHA_8);
-            Canvas cropCanvas = new Canvas(cropBitmap);
-
-            Paint cropPaint = new Paint();
-            cropPaint.setColor(0xffffffff);
-            cropPaint.setStyle(Paint.Style.FILL);
-
-            cropCanvas.drawRect(mViewPortMarginLeft - 1,
-                                mViewPortMarginTop - 1,
-                                getWidth() - mViewPortMarginRight + 1,
-                                getHeight() - mViewPortMarginBottom + 1,
-                                cropPaint);
-            cropViewPortShader = new BitmapShader(cropBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        requestData();
+        updateGridLines();
+        // everything except values is masked by ViewPort, parts out of dirty region are skipped
+        getPlotBounds(mDirtyRect);
+        if (!canvas.quickReject(mDirtyRect.left,
+                                mDirtyRect.top,
+                                mDirtyRect.right,
+                                mDirtyRect.bottom,
+                                Canvas.EdgeType.BW)) {
+            canvas.save();
+            canvas.clipRect(mDirtyRect);
+            if (isDraft(DraftQuality.NO_ANTIALIAS)) canvas.setDrawFilter(mDraftFilter);
+            if (!drawTiles(canvas)) drawContent(canvas);
+            canvas.setDrawFilter(null);
+            canvas.restore();
+        }
+        drawValues(canvas);
+        mDrawnViewPortLeft = mViewPortLeft;
+        mDrawnViewPortRight = mViewPortRight;
+        mDrawnViewPortTop = mViewPortTop;
+        mDrawnViewPortBottom = mViewPortBottom;
+    }
+
+    /**
+     * Gets ViewPort area of the view with one pixel around for lines on its sides.
+     */
+    private void getPlotBounds(Rect out) {
+        out.set((int) mViewPortMarginLeft - 1,
+                (int) mViewPortMarginTop - 1,
+                (int) Math.ceil(getWidth() - mViewPortMarginRight) + 1,
+                (int) Math.ceil(getHeight() - mViewPortMarginBottom) + 1);
+    }
+
+    /**
+     * Gets area of horizontal values.
+     */
+    private void getHorValuesBounds(Rect out) {
+        out.set(mGrid.horValuesMarginLeft,
+                mGrid.horValuesMarginTop,
+                getWidth() - mGrid.horValuesMarginRight,
+                (int) Math.ceil(getHeight() - mGrid.horValuesMarginBottom + mGrid.mainHorValuesPaint.descent()));
+    }
+
+    /**
+     * Gets area of vertical values.
+     */
+    private void getVerValuesBounds(Rect out) {
+        out.set(mGrid.verValuesMarginLeft,
+                mGrid.verValuesMarginTop,
+                getWidth() - mGrid.verValuesMarginRight,
+                (int) Math.ceil(getHeight() - mGrid.verValuesMarginBottom + mGrid.mainVerValuesPaint.descent()));
+    }
+
+    /**
+     * Requests redrawing of ViewPort area only.
+     */
+    private void invalidatePlot() {
+        getPlotBounds(mDirtyRect);
+        postDirty(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+    }
+
+    /**
+     * Requests redrawing of the area, in batch update it is requested by {@link #endUpdate()}.
+     */
+    private void postDirty(int left, int top, int right, int bottom) {
+        if (mUpdateDepth > 0) {
+            mPendingDirty.union(left, top, right, bottom);
+        } else {
+            postInvalidate(left, top, right, bottom);
+        }
+    }
+
+    /**
+     * Requests redrawing of parts changed by moving of ViewPort since last drawing.
+     */
+    private void invalidateViewPort() {
+        if (Float.isNaN(mDrawnViewPortLeft)) {
+            postDirty(0, 0, getWidth(), getHeight());
+            return;
+        }
+        invalidateMoving(mViewPortLeft != mDrawnViewPortLeft || mViewPortRight != mDrawnViewPortRight,
+                         mViewPortTop != mDrawnViewPortTop || mViewPortBottom != mDrawnViewPortBottom);
+    }
+
+    /**
+     * Requests redrawing of ViewPort and values which positions are changed by moving.
+     * 
+     * @param hor
+     *            is ViewPort moved horizontally?
+     * @param ver
+     *            is ViewPort moved vertically?
+     */
+    private void invalidateMoving(boolean hor, boolean ver) {
+        if (!hor && !ver) return;
+        invalidatePlot();
+        if (hor && mGrid.horMainValuesEnabled) {
+            getHorValuesBounds(mDirtyRect);
+            postDirty(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+        }
+        if (ver && mGrid.verMainValuesEnabled) {
+            getVerValuesBounds(mDirtyRect);
+            postDirty(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
         }
+    }
+
+    /**
+     * Requests redrawing of vertical strip of ViewPort where drawing of the line was changed. Strip is widened by
+     * markers and texts of the line.
+     */
+    private void invalidateRange(Line line, float fromX, float toX) {
+        float margin = getDrawingMargin(line);
+        getPlotBounds(mDirtyRect);
+        // coordinates are clamped before conversion, changes of the whole line come as infinite range
+        double left = ((double) fromX - mViewPortLeft) * mScaleX + mViewPortMarginLeft - margin;
+        double right = ((double) toX - mViewPortLeft) * mScaleX + mViewPortMarginLeft + margin;
+        int l = (int) Math.max(Math.floor(left), mDirtyRect.left);
+        int r = (int) Math.min(Math.ceil(right), mDirtyRect.right);
+        if (l < r) postDirty(l, mDirtyRect.top, r, mDirtyRect.bottom);
+    }
+
+    /**
+     * @return distance in pixels markers, texts and stroke of the line may reach from its points
+     */
+    private float getDrawingMargin(Line line) {
+        return line.getPointStyleExtent() + line.getPaint().getStrokeWidth() + mCullingMargin;
+    }
 
+    /**
+     * Draws grid, lines and markers directly. Used for whole ViewPort and for parts of it without ready tiles.
+     */
+    void drawContent(Canvas canvas) {
         drawVerticalGrid(canvas);
         drawHorizontalGrid(canvas);
         for (Line line : mLines) {
@@ -711,7 +975,31 @@ public class LineChartView extends View {
         }
 
         drawPoints(canvas);
-        drawValues(canvas);
+    }
+
+    /**
+     * Draws chart content from tiles of the tile cache, parts without ready tiles are drawn directly.
+     * 
+     * @return false if tile cache is disabled or zoom is changing
+     */
+    private boolean drawTiles(Canvas canvas) {
+        if (mTileCache == null) return false;
+        float margin = mCullingMargin;
+        for (Line line : mLines) {
+            margin = Math.max(margin, getDrawingMargin(line));
+        }
+        return mTileCache.draw(canvas,
+                               mLines,
+                               mGrid,
+                               mScaleX,
+                               mScaleY,
+                               -mViewPortLeft * mScaleX + mViewPortMarginLeft,
+                               mViewPortTop * mScaleY + mViewPortMarginTop,
+                               mViewPortMarginLeft - 1,
+                               mViewPortMarginTop - 1,
+                               getWidth() - mViewPortMarginRight + 1,
+                               getHeight() - mViewPortMarginBottom + 1,
+                               margin);
     }
 
     /**
@@ -723,158 +1011,248 @@ public class LineChartView extends View {
      *            line
      */
     private void drawLine(Canvas canvas, Line line) {
-        Path pathCopy;
-        if (line.isFilled()) {
-            pathCopy = new Path(line.getFilledPath());
-            mMatrix.reset();
-            mMatrix.setScale(mScaleX, -mScaleY);
-
-            pathCopy.transform(mMatrix);
-            mMatrix.reset();
-            mMatrix.setTranslate(-mViewPortLeft * mScaleX + mViewPortMarginLeft, (mViewPortTop) * mScaleY
-                                                                                 + mViewPortMarginTop);
-            pathCopy.transform(mMatrix);
-            line.getFilledPaint().setShader(cropViewPortShader);
-            canvas.drawPath(pathCopy, line.getFilledPaint());
+        float fromX = getViewFromX();
+        float toX = getViewToX();
+        float translateX = -mViewPortLeft * mScaleX + mViewPortMarginLeft;
+        float translateY = mViewPortTop * mScaleY + mViewPortMarginTop;
+        canvas.save();
+        canvas.translate(translateX, translateY);
+        if (isDraft(DraftQuality.DECIMATE_LINES)) {
+            if (line.isFilled()) {
+                canvas.drawPath(line.getDraftScreenFilledPath(mScaleX, mScaleY, fromX, toX), line.getFilledPaint());
+            }
+            canvas.drawPath(line.getDraftScreenPath(mScaleX, mScaleY, fromX, toX), line.getPaint());
+        } else if (!line.drawRecorded(canvas, mScaleX, mScaleY, fromX, toX)) {
+            if (line.isFilled()) {
+                canvas.drawPath(line.getScreenFilledPath(mScaleX, mScaleY, fromX, toX), line.getFilledPaint());
+            }
+            canvas.drawPath(line.getScreenPath(mScaleX, mScaleY, fromX, toX), line.getPaint());
         }
+        canvas.restore();
+    }
 
-        pathCopy = new Path(line.getPath());
-        mMatrix.reset();
-        mMatrix.setScale(mScaleX, -mScaleY);
-        pathCopy.transform(mMatrix);
-        mMatrix.reset();
-        mMatrix.setTranslate(-mViewPortLeft * mScaleX + mViewPortMarginLeft, (mViewPortTop) * mScaleY
-                                                                             + mViewPortMarginTop);
-        pathCopy.transform(mMatrix);
-        line.getPaint().setShader(cropViewPortShader);
-        canvas.drawPath(pathCopy, line.getPaint());
+    /**
+     * @return horizontal chart coordinate at the left edge of the view
+     */
+    private float getViewFromX() {
+        return mViewPortLeft - mViewPortMarginLeft / mScaleX;
+    }
+
+    /**
+     * @return horizontal chart coordinate at the right edge of the view
+     */
+    private float getViewToX() {
+        return mViewPortLeft + (getWidth() - mViewPortMarginLeft) / mScaleX;
     }
 
     private void drawPoints(Canvas canvas) {
-        for (Line line : mLines) {
-            for (LinePoint point : line.getPoints()) {
-                drawPoint(canvas, point);
-                drawPointText(canvas, point);
+        for (int l = 0; l < mLines.size() && !isDraft(DraftQuality.HIDE_MARKERS); l++) {
+            Line line = mLines.get(l);
+            int from = getFirstVisiblePoint(line);
+            int to = getLastVisiblePoint(line);
+            for (int i = from; i < to; i++) {
+                LinePoint point = line.getAttachedPoint(i);
+                if (point == null) {
+                    // points without LinePoint object have only marker style
+                    PointStyle style = line.getPointStyle(i);
+                    if (style != null) addPoint(canvas, style, line.getX(i), line.getY(i));
+                } else if (point.isVisible()) {
+                    addPoint(canvas, point.getStyle(), line.getX(i), line.getY(i));
+                }
+            }
+        }
+        flushMarkers(canvas);
+        // texts over all markers
+        for (int l = 0; l < mLines.size() && !isDraft(DraftQuality.HIDE_POINT_TEXTS); l++) {
+            Line line = mLines.get(l);
+            int from = getFirstVisiblePoint(line);
+            int to = getLastVisiblePoint(line);
+            for (int i = from; i < to; i++) {
+                LinePoint point = line.getAttachedPoint(i);
+                if (point != null) drawPointText(canvas, point, line.getX(i), line.getY(i));
             }
         }
     }
 
-    private void drawPoint(Canvas canvas, LinePoint point) {
-        if (point.isVisible()) {
-            float x = point.getX() * mScaleX - mViewPortLeft * mScaleX + mViewPortMarginLeft;
-            float y = point.getY() * (-mScaleY) + mViewPortTop * mScaleY + mViewPortMarginTop;
-            if (x + (point.getRadius() + point.getStrokePaint().getStrokeWidth()) > mViewPortMarginLeft 
-                    && x - (point.getRadius() + point.getStrokePaint().getStrokeWidth()) < getWidth() - mViewPortMarginRight
-                && y + (point.getRadius() + point.getStrokePaint().getStrokeWidth()) > mViewPortMarginTop
-                && y - (point.getRadius() + point.getStrokePaint().getStrokeWidth()) < getHeight() - mViewPortMarginBottom) {
-                point.getFillPaint().setShader(cropViewPortShader);
-                point.getStrokePaint().setShader(cropViewPortShader);
-                if (point.getType() == Type.CIRCLE) {
-                    canvas.drawCircle(x, y, point.getRadius(), point.getFillPaint());
-                    canvas.drawCircle(x, y, point.getRadius(), point.getStrokePaint());
-                } else if (point.getType() == Type.SQUARE) {
-                    canvas.drawRect(x - point.getRadius(),
-                                    y - point.getRadius(),
-                                    x + point.getRadius(),
-                                    y + point.getRadius(),
-                                    point.getFillPaint());
-                    canvas.drawRect(x - point.getRadius(),
-                                    y - point.getRadius(),
-                                    x + point.getRadius(),
-                                    y + point.getRadius(),
-                                    point.getStrokePaint());
-                } else if (point.getType() == Type.TRIANGLE) {
-                    Path path = new Path();
-                    path.moveTo(x, y - point.getRadius());
-                    path.lineTo(x - 0.86f * point.getRadius(), y + 0.5f * point.getRadius());
-                    path.lineTo(x + 0.86f * point.getRadius(), y + 0.5f * point.getRadius());
-                    path.close();
-                    canvas.drawPath(path, point.getFillPaint());
-                    canvas.drawPath(path, point.getStrokePaint());
-                }
+    /**
+     * @return index of the first point which marker or text may reach ViewPort
+     */
+    private int getFirstVisiblePoint(Line line) {
+        return line.lowerBound(mViewPortLeft - (line.getPointStyleExtent() + mCullingMargin) / mScaleX);
+    }
 
+    /**
+     * @return index after the last point which marker or text may reach ViewPort
+     */
+    private int getLastVisiblePoint(Line line) {
+        return line.upperBound(mViewPortRight + (line.getPointStyleExtent() + mCullingMargin) / mScaleX);
+    }
+
+    /**
+     * Adds marker of the point to the batch of markers looking the same.
+     */
+    private void addPoint(Canvas canvas, PointStyle style, float pointX, float pointY) {
+        float x = pointX * mScaleX - mViewPortLeft * mScaleX + mViewPortMarginLeft;
+        float y = pointY * (-mScaleY) + mViewPortTop * mScaleY + mViewPortMarginTop;
+        float extent = style.getRadius() + style.getStrokePaint().getStrokeWidth();
+        if (x + extent <= mViewPortMarginLeft || x - extent >= getWidth() - mViewPortMarginRight
+            || y + extent <= mViewPortMarginTop || y - extent >= getHeight() - mViewPortMarginBottom) {
+            return;
+        }
+        MarkerBatch batch = mLastMarkerBatch;
+        if (batch == null || !batch.matches(style)) {
+            batch = null;
+            for (int i = 0; i < mMarkerBatches.size() && batch == null; i++) {
+                if (mMarkerBatches.get(i).matches(style)) batch = mMarkerBatches.get(i);
+            }
+            if (batch == null) {
+                // too many different looks: draw collected markers to limit search
+                if (mMarkerBatches.size() >= MAX_MARKER_BATCHES) flushMarkers(canvas);
+                batch = new MarkerBatch(style);
+                mMarkerBatches.add(batch);
             }
+            mLastMarkerBatch = batch;
+        }
+        batch.add(x, y);
+    }
 
+    /**
+     * Draws collected markers. Batches which got no markers are dropped.
+     */
+    private void flushMarkers(Canvas canvas) {
+        for (int i = mMarkerBatches.size() - 1; i >= 0; i--) {
+            if (mMarkerBatches.get(i).isEmpty()) mMarkerBatches.remove(i);
         }
+        for (int i = 0; i < mMarkerBatches.size(); i++) {
+            mMarkerBatches.get(i).draw(canvas);
+        }
+        mLastMarkerBatch = null;
     }
 
-    private void drawPointText(Canvas canvas, LinePoint point) {
-        float x = point.getX() * mScaleX - mViewPortLeft * mScaleX + mViewPortMarginLeft;
-        float y = point.getY() * (-mScaleY) + mViewPortTop * mScaleY + mViewPortMarginTop;
+    private void drawPointText(Canvas canvas, LinePoint point, float pointX, float pointY) {
         if (point.isTextVisible()) {
-            point.getTextPaint().setTextAlign(Align.CENTER);
-            point.getTextPaint().setShader(cropViewPortShader);
-            float txtX = x;
-            float txtY = y + (point.getTextPaint().getTextSize() - point.getTextPaint().descent()) / 2;
-            if ((point.getTextAlign() & TextAlign.LEFT) > 0) {
-                point.getTextPaint().setTextAlign(Align.RIGHT);
-                txtX = x - point.getRadius() - point.getTextPaint().descent();
-            } else if ((point.getTextAlign() & TextAlign.RIGHT) > 0) {
-                point.getTextPaint().setTextAlign(Align.LEFT);
-                txtX = x + point.getRadius() + point.getTextPaint().descent();
-            }
+            float x = pointX * mScaleX - mViewPortLeft * mScaleX + mViewPortMarginLeft;
+            float y = pointY * (-mScaleY) + mViewPortTop * mScaleY + mViewPortMarginTop;
+            PointStyle style = point.getStyle();
+            drawPointText(canvas, point.getText(), style, style.getTextPaint(), x, y);
+        }
+    }
 
-            if ((point.getTextAlign() & TextAlign.TOP) > 0) {
-                txtY = y - point.getRadius() - point.getTextPaint().descent();
-            } else if ((point.getTextAlign() & TextAlign.BOTTOM) > 0) {
-                txtY = y + point.getRadius() + point.getTextPaint().descent() + point.getTextPaint().getTextSize();
-            }
-            canvas.drawText(point.getText(), txtX, txtY, point.getTextPaint());
+    /**
+     * Draws text of the point aligned around its marker. Paint isn't changed: it belongs to a shared style which may be
+     * drawn on other threads at the same time.
+     * 
+     * @param textPaint
+     *            paint for the text
+     * @param x
+     *            horizontal position of the point in pixels
+     * @param y
+     *            vertical position of the point in pixels
+     */
+    static void drawPointText(Canvas canvas, String text, PointStyle style, Paint textPaint, float x, float y) {
+        Align align = Align.CENTER;
+        float txtX = x;
+        float txtY = y + (textPaint.getTextSize() - textPaint.descent()) / 2;
+        if ((style.getTextAlign() & TextAlign.LEFT) > 0) {
+            align = Align.RIGHT;
+            txtX = x - style.getRadius() - textPaint.descent();
+        } else if ((style.getTextAlign() & TextAlign.RIGHT) > 0) {
+            align = Align.LEFT;
+            txtX = x + style.getRadius() + textPaint.descent();
+        }
+
+        if ((style.getTextAlign() & TextAlign.TOP) > 0) {
+            txtY = y - style.getRadius() - textPaint.descent();
+        } else if ((style.getTextAlign() & TextAlign.BOTTOM) > 0) {
+            txtY = y + style.getRadius() + textPaint.descent() + textPaint.getTextSize();
+        }
+        Align paintAlign = textPaint.getTextAlign();
+        if (paintAlign != align) {
+            // anchor is moved to where paint's own align expects it
+            float width = textPaint.measureText(text);
+            txtX += (getAlignFactor(paintAlign) - getAlignFactor(align)) * width;
         }
+        canvas.drawText(text, txtX, txtY, textPaint);
+    }
+
+    /**
+     * @return part of text width between its left side and anchor of the align
+     */
+    private static float getAlignFactor(Align align) {
+        if (align == Align.CENTER) return 0.5f;
+        if (align == Align.RIGHT) return 1;
+        return 0;
     }
 
     private void drawVerticalGrid(Canvas canvas) {
-        int firstLertLineX = (((int) mViewPortLeft) / mGrid.stepHor - 1) * mGrid.stepHor;
-        float subStep = (float) mGrid.stepHor / (mGrid.horSubLinesCount + 1);
-        mGrid.mainVerLinesPaint.setShader(cropViewPortShader);
-        mGrid.subVerLinesPaint.setShader(cropViewPortShader);
-        mGrid.mainHorValuesPaint.setShader(cropHorValuesShader);
+        if (!isDraft(DraftQuality.HIDE_SUB_GRID)) mGrid.subVerLines.draw(canvas, mGrid.subVerLinesPaint);
+        mGrid.mainVerLines.draw(canvas, mGrid.mainVerLinesPaint);
+    }
+
+    private void drawHorizontalGrid(Canvas canvas) {
+        if (!isDraft(DraftQuality.HIDE_SUB_GRID)) mGrid.subHorLines.draw(canvas, mGrid.subHorLinesPaint);
+        mGrid.mainHorLines.draw(canvas, mGrid.mainHorLinesPaint);
+    }
+
+    /**
+     * Builds grid lines in pixels if ViewPort, view size or grid parameters were changed since last frame.
+     */
+    private void updateGridLines() {
+        float[] key = mGrid.newLinesKey;
+        key[0] = mViewPortLeft;
+        key[1] = mViewPortRight;
+        key[2] = mViewPortTop;
+        key[3] = mViewPortBottom;
+        key[4] = mViewPortMarginLeft;
+        key[5] = mViewPortMarginRight;
+        key[6] = mViewPortMarginTop;
+        key[7] = mViewPortMarginBottom;
+        key[8] = getWidth();
+        key[9] = getHeight();
+        key[10] = mGrid.stepHor;
+        key[11] = mGrid.stepVer;
+        key[12] = mGrid.horSubLinesCount;
+        key[13] = mGrid.verSubLinesCount;
+        key[14] = mGrid.verMainLinesEnabled ? 1 : 0;
+        key[15] = mGrid.verSubLinesEnabled ? 1 : 0;
+        key[16] = mGrid.horMainLinesEnabled ? 1 : 0;
+        key[17] = mGrid.horSubLinesEnabled ? 1 : 0;
+        if (!mGrid.isLinesChanged()) return;
+
+        mGrid.mainVerLines.clear();
+        mGrid.subVerLines.clear();
         if (mGrid.verMainLinesEnabled) {
-            for (int x = firstLertLineX; x < mViewPortRight + mViewPortMarginRight / mScaleY; x += mGrid.stepHor) {
-                canvas.drawLine((x - mViewPortLeft) * mScaleX + mViewPortMarginLeft,
-                                mViewPortMarginTop,
-                                (x - mViewPortLeft) * mScaleX + mViewPortMarginLeft,
-                                getHeight() - mViewPortMarginBottom,
-                                mGrid.mainVerLinesPaint);
+            int firstLertLineX = (((int) mViewPortLeft) / mGrid.stepHor - 1) * mGrid.stepHor;
+            float subStep = (float) mGrid.stepHor / (mGrid.horSubLinesCount + 1);
+            float top = mViewPortMarginTop;
+            float bottom = getHeight() - mViewPortMarginBottom;
+            for (int x = firstLertLineX; x < mViewPortRight + mViewPortMarginRight / mScaleX; x += mGrid.stepHor) {
+                float lineX = (x - mViewPortLeft) * mScaleX + mViewPortMarginLeft;
+                mGrid.mainVerLines.add(lineX, top, lineX, bottom);
                 if (mGrid.verSubLinesEnabled) {
                     for (int i = 1; i <= mGrid.horSubLinesCount; i++) {
-                        canvas.drawLine((x + i * subStep - mViewPortLeft) * mScaleX + mViewPortMarginLeft,
-                                        mViewPortMarginTop,
-                                        (x + i * subStep - mViewPortLeft) * mScaleX + mViewPortMarginLeft,
-                                        getHeight() - mViewPortMarginBottom,
-                                        mGrid.subVerLinesPaint);
+                        float subX = (x + i * subStep - mViewPortLeft) * mScaleX + mViewPortMarginLeft;
+                        mGrid.subVerLines.add(subX, top, subX, bottom);
                     }
                 }
             }
-
         }
-    }
-
-    private void drawHorizontalGrid(Canvas canvas) {
-        int firstHorLineY = (((int) mViewPortBottom) / mGrid.stepVer) * mGrid.stepVer;
-        float subStep = (float) mGrid.stepVer / (mGrid.verSubLinesCount + 1);
-        mGrid.mainHorLinesPaint.setShader(cropViewPortShader);
-        mGrid.subHorLinesPaint.setShader(cropViewPortShader);
-        mGrid.mainVerValuesPaint.setShader(cropVerValuesShader);
 
+        mGrid.mainHorLines.clear();
+        mGrid.subHorLines.clear();
         if (mGrid.horMainLinesEnabled) {
+            int firstHorLineY = (((int) mViewPortBottom) / mGrid.stepVer) * mGrid.stepVer;
+            float subStep = (float) mGrid.stepVer / (mGrid.verSubLinesCount + 1);
+            float left = mViewPortMarginLeft;
+            float right = getWidth() - mViewPortMarginRight;
+            float bottom = getHeight() - mViewPortMarginBottom;
             for (int y = firstHorLineY; y < mViewPortTop; y += mGrid.stepVer) {
-                canvas.drawLine(mViewPortMarginLeft,
-                                getHeight() - mViewPortMarginBottom - (y - mViewPortBottom) * mScaleY,
-                                getWidth() - mViewPortMarginRight,
-                                getHeight() - mViewPortMarginBottom - (y - mViewPortBottom) * mScaleY,
-                                mGrid.mainHorLinesPaint);
+                float lineY = bottom - (y - mViewPortBottom) * mScaleY;
+                mGrid.mainHorLines.add(left, lineY, right, lineY);
                 if (mGrid.horSubLinesEnabled) {
                     for (int i = 1; i <= mGrid.verSubLinesCount; i++) {
-                        canvas.drawLine(mViewPortMarginLeft,
-                                        getHeight() - mViewPortMarginBottom
-                                                - (y - mViewPortBottom + i * subStep)
-                                                * mScaleY,
-                                        getWidth() - mViewPortMarginRight,
-                                        getHeight() - mViewPortMarginBottom
-                                                - (y - mViewPortBottom + i * subStep)
-                                                * mScaleY,
-                                        mGrid.subHorLinesPaint);
+                        float subY = bottom - (y - mViewPortBottom + i * subStep) * mScaleY;
+                        mGrid.subHorLines.add(left, subY, right, subY);
                     }
                 }
             }
@@ -888,111 +1266,94 @@ public class LineChartView extends View {
 
     private void drawHorizontalValues(Canvas canvas) {
         if (mGrid.horMainValuesEnabled) {
-            if (cropHorValuesShader == null) {
-                Bitmap cropHorValuesBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Config.ALPHA_8);
-                Canvas cropCanvas = new Canvas(cropHorValuesBitmap);
-
-                Paint cropPaint = new Paint();
-                cropPaint.setColor(0xffffffff);
-                cropPaint.setStyle(Paint.Style.FILL);
-
-                float descent = (mGrid.mainHorValuesPaint == null) ? 0 : mGrid.mainHorValuesPaint.descent();
-
-                cropCanvas.drawRect(mGrid.horValuesMarginLeft,
-                                    mGrid.horValuesMarginTop,
-                                    getWidth() - mGrid.horValuesMarginRight,
-                                    getHeight() - mGrid.horValuesMarginBottom + descent,
-                                    cropPaint);
-                cropHorValuesShader = new BitmapShader(cropHorValuesBitmap,
-                                                       Shader.TileMode.CLAMP,
-                                                       Shader.TileMode.CLAMP);
-            }
+            getHorValuesBounds(mDirtyRect);
+            if (canvas.quickReject(mDirtyRect.left,
+                                   mDirtyRect.top,
+                                   mDirtyRect.right,
+                                   mDirtyRect.bottom,
+                                   Canvas.EdgeType.BW)) return;
+            canvas.save();
+            canvas.clipRect(mDirtyRect);
             int first = ((int) ((mViewPortLeft - mViewPortMarginLeft / mScaleX) / mGrid.stepHor) - 1) * mGrid.stepHor;
             int last = (int) (mViewPortRight + mViewPortMarginRight / mScaleX) + mGrid.stepHor;
             // float subStep = (float) mGrid.stepHor / (mGrid.horSubLinesCount +
             // 1);
 
-            mGrid.mainVerLinesPaint.setShader(cropViewPortShader);
-            mGrid.subVerLinesPaint.setShader(cropViewPortShader);
-            mGrid.mainHorValuesPaint.setShader(cropHorValuesShader);
-
-            for (int x = first; x <= last; x += mGrid.stepHor) {
-                String string = String.valueOf(x);
-                if (mGrid.horValuesText != null) string = mGrid.horValuesText.get(x);
-                if (string == null) string = "";
+            Paint paint = mGrid.mainHorValuesPaint;
+            // labels are aligned by cached widths
+            paint.setTextAlign(Align.LEFT);
 
-                float txtY = getHeight() - 1 - mGrid.horValuesMarginBottom;
-                float txtX = (x - mViewPortLeft) * mScaleX + mViewPortMarginLeft;
+            float txtY = getHeight() - 1 - mGrid.horValuesMarginBottom;
+            if ((mGrid.horValuesAlign & TextAlign.TOP) > 0) {
+                txtY = mGrid.horValuesMarginTop + paint.getTextSize();
+            } else if ((mGrid.horValuesAlign & TextAlign.VERTICAL_CENTER) > 0) {
+                txtY = (getHeight() - (mGrid.horValuesMarginTop + mGrid.horValuesMarginBottom) + paint.getTextSize()) / 2;
+            }
+            float widthFactor = 0;
+            if ((mGrid.horValuesAlign & TextAlign.LEFT) > 0) {
+                widthFactor = 0;
+            } else if ((mGrid.horValuesAlign & TextAlign.RIGHT) > 0) {
+                widthFactor = 1;
+            } else if ((mGrid.horValuesAlign & TextAlign.HORIZONTAL_CENTER) > 0) {
+                widthFactor = 0.5f;
+            }
 
-                if ((mGrid.horValuesAlign & TextAlign.TOP) > 0) {
-                    txtY = mGrid.horValuesMarginTop + mGrid.mainHorValuesPaint.getTextSize();
-                } else if ((mGrid.horValuesAlign & TextAlign.VERTICAL_CENTER) > 0) {
-                    txtY = (getHeight() - (mGrid.horValuesMarginTop + mGrid.horValuesMarginBottom) + mGrid.mainHorValuesPaint.getTextSize()) / 2;
-                }
-                if ((mGrid.horValuesAlign & TextAlign.LEFT) > 0) {
-                    mGrid.mainHorValuesPaint.setTextAlign(Align.LEFT);
-                } else if ((mGrid.horValuesAlign & TextAlign.RIGHT) > 0) {
-                    mGrid.mainHorValuesPaint.setTextAlign(Align.RIGHT);
-                } else if ((mGrid.horValuesAlign & TextAlign.HORIZONTAL_CENTER) > 0) {
-                    mGrid.mainHorValuesPaint.setTextAlign(Align.CENTER);
-                }
-                canvas.drawText(string, txtX, txtY, mGrid.mainHorValuesPaint);
+            for (int x = first; x <= last; x += mGrid.stepHor) {
+                int slot = mGrid.horLabels.find(x, paint);
+                int length = mGrid.horLabels.getLength(slot);
+                if (length == 0) continue;
+                float txtX = (x - mViewPortLeft) * mScaleX + mViewPortMarginLeft - mGrid.horLabels.getWidth(slot)
+                             * widthFactor;
+                canvas.drawText(mGrid.horLabels.getChars(slot), 0, length, txtX, txtY, paint);
             }
+            canvas.restore();
         }
     }
 
     private void drawVerticalValues(Canvas canvas) {
         if (mGrid.verMainValuesEnabled) {
-            if (cropVerValuesShader == null) {
-                Bitmap cropBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Config.ALPHA_8);
-                Canvas cropCanvas = new Canvas(cropBitmap);
-
-                Paint cropPaint = new Paint();
-                cropPaint.setColor(0xffffffff);
-                cropPaint.setStyle(Paint.Style.FILL);
-                float descent = (mGrid.mainVerValuesPaint == null) ? 0 : mGrid.mainVerValuesPaint.descent();
-                cropCanvas.drawRect(mGrid.verValuesMarginLeft,
-                                    mGrid.verValuesMarginTop,
-                                    getWidth() - mGrid.verValuesMarginRight,
-                                    getHeight() - mGrid.verValuesMarginBottom + descent,
-                                    cropPaint);
-                cropVerValuesShader = new BitmapShader(cropBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-            }
+            getVerValuesBounds(mDirtyRect);
+            if (canvas.quickReject(mDirtyRect.left,
+                                   mDirtyRect.top,
+                                   mDirtyRect.right,
+                                   mDirtyRect.bottom,
+                                   Canvas.EdgeType.BW)) return;
+            canvas.save();
+            canvas.clipRect(mDirtyRect);
             int firstHorLineY = ((int) (mViewPortBottom - mViewPortMarginBottom / mScaleY) / mGrid.stepVer - 1) * mGrid.stepVer;
             int last = (int) (mViewPortTop + mViewPortMarginTop / mScaleY) + mGrid.stepVer;
             // float subStep = (float) mGrid.stepVer / (mGrid.verSubLinesCount + 1);
-            mGrid.mainVerValuesPaint.setShader(cropVerValuesShader);
+            Paint paint = mGrid.mainVerValuesPaint;
+            // labels are aligned by cached widths
+            paint.setTextAlign(Align.LEFT);
+
+            float offsetY = -paint.descent();
+            if ((mGrid.verValuesAlign & TextAlign.TOP) > 0) {
+                offsetY = paint.getTextSize() + paint.descent();
+            } else if ((mGrid.verValuesAlign & TextAlign.VERTICAL_CENTER) > 0) {
+                offsetY = (paint.getTextSize() - paint.descent()) / 2;
+            }
+            int anchorX = mGrid.verValuesMarginLeft;
+            float widthFactor = 0;
+            if ((mGrid.verValuesAlign & TextAlign.LEFT) > 0) {
+                widthFactor = 0;
+            } else if ((mGrid.verValuesAlign & TextAlign.RIGHT) > 0) {
+                widthFactor = 1;
+                anchorX = getWidth() - mGrid.verValuesMarginRight;
+            } else if ((mGrid.verValuesAlign & TextAlign.HORIZONTAL_CENTER) > 0) {
+                widthFactor = 0.5f;
+                anchorX = (getWidth() - mGrid.verValuesMarginLeft - mGrid.verValuesMarginRight) / 2;
+            }
+
             for (int y = firstHorLineY; y < last; y += mGrid.stepVer) {
-                String string = String.valueOf(y);
-                if (mGrid.verValuesText != null) string = mGrid.verValuesText.get(y);
-                if (string == null) string = "";
-                int txtX = mGrid.verValuesMarginLeft;
-                float txtY = (getHeight() - mViewPortMarginBottom) - (y - mViewPortBottom)
-                             * mScaleY
-                             - mGrid.mainVerValuesPaint.descent();
-
-                if ((mGrid.verValuesAlign & TextAlign.TOP) > 0) {
-                    txtY = (getHeight() - mViewPortMarginBottom) - (y - mViewPortBottom)
-                           * mScaleY
-                           + mGrid.mainVerValuesPaint.getTextSize()
-                           + mGrid.mainVerValuesPaint.descent();
-                } else if ((mGrid.verValuesAlign & TextAlign.VERTICAL_CENTER) > 0) {
-                    txtY = (getHeight() - mViewPortMarginBottom) - (y - mViewPortBottom)
-                           * mScaleY
-                           + (mGrid.mainVerValuesPaint.getTextSize() - mGrid.mainVerValuesPaint.descent())
-                           / 2;
-                }
-                if ((mGrid.verValuesAlign & TextAlign.LEFT) > 0) {
-                    mGrid.mainVerValuesPaint.setTextAlign(Align.LEFT);
-                } else if ((mGrid.verValuesAlign & TextAlign.RIGHT) > 0) {
-                    mGrid.mainVerValuesPaint.setTextAlign(Align.RIGHT);
-                    txtX = getWidth() - mGrid.verValuesMarginRight;
-                } else if ((mGrid.verValuesAlign & TextAlign.HORIZONTAL_CENTER) > 0) {
-                    mGrid.mainVerValuesPaint.setTextAlign(Align.CENTER);
-                    txtX = (getWidth() - mGrid.verValuesMarginLeft - mGrid.verValuesMarginRight) / 2;
-                }
-                canvas.drawText(string, txtX, txtY, mGrid.mainVerValuesPaint);
+                int slot = mGrid.verLabels.find(y, paint);
+                int length = mGrid.verLabels.getLength(slot);
+                if (length == 0) continue;
+                float txtX = anchorX - mGrid.verLabels.getWidth(slot) * widthFactor;
+                float txtY = (getHeight() - mViewPortMarginBottom) - (y - mViewPortBottom) * mScaleY + offsetY;
+                canvas.drawText(mGrid.verLabels.getChars(slot), 0, length, txtX, txtY, paint);
             }
+            canvas.restore();
         }
     }
 
@@ -1009,17 +1370,22 @@ public class LineChartView extends View {
         float x = event.getX();
         float y = event.getY();
 
+        if (mVelocityTracker == null) mVelocityTracker = VelocityTracker.obtain();
+        // tracker uses all historical samples of the event
+        mVelocityTracker.addMovement(event);
+
         switch (event.getAction()) {
         case MotionEvent.ACTION_DOWN:
+            mFling.stop();
             mLastX = x;
             mLastY = y;
             downX = x;
             downY = y;
             break;
         case MotionEvent.ACTION_MOVE:
-            velocityX = (mLastX - x) / mScaleX;
-            velocityY = (mLastY - y) / mScaleY;
-            moveViewPort(velocityX, velocityY);
+            startDraft();
+            moveViewPort((mLastX - x) / mScaleX, (mLastY - y) / mScaleY);
+            invalidateViewPort();
             mLastX = x;
             mLastY = y;
             break;
@@ -1027,13 +1393,23 @@ public class LineChartView extends View {
             if (Math.abs(downX - x) < mTouchSlop && Math.abs(downY - y) < mTouchSlop) {
                 if (mListener != null) findClickedVerticle(x, y);
             } else {
-                frictionX = -Math.signum(velocityX) * Math.abs(mViewPortRight - mViewPortLeft) / 1000 * mFrictionForceX;
-                frictionY = -Math.signum(velocityY) * Math.abs(mViewPortTop - mViewPortBottom) / 1000 * mFrictionForceY;
-                isMovingX = isMovingY = true;
+                mVelocityTracker.computeCurrentVelocity(1000, mMaxFlingVelocity);
+                float velocityX = -mVelocityTracker.getXVelocity();
+                float velocityY = -mVelocityTracker.getYVelocity();
+                if (Math.abs(velocityX) >= mMinFlingVelocity || Math.abs(velocityY) >= mMinFlingVelocity) {
+                    mFling.fling(velocityX, velocityY);
+                }
             }
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+            settleDraft();
+            break;
+        case MotionEvent.ACTION_CANCEL:
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+            settleDraft();
             break;
         }
-        postInvalidate();
         return true;
     }
 
@@ -1047,26 +1423,32 @@ public class LineChartView extends View {
         float gX = (x - mViewPortMarginLeft) / mScaleX + mViewPortLeft;
         float gY = (getHeight() - y - mViewPortMarginBottom) / mScaleY + mViewPortBottom;
 
-        Log.i("", gX + "," + gY);
-        LinePoint point = null;
+        int index = -1;
         Line line = null;
         float minR = Float.MAX_VALUE;
-
-        for (Line l : mLines)
-            for (LinePoint p : l.getPoints()) {
-                if (gX >= p.getX() - getPointClickRadius() / mScaleX && gX <= p.getX() + getPointClickRadius()
-                                                                              / mScaleX
-                    && gY >= p.getY() - getPointClickRadius() / mScaleY
-                    && gY <= p.getY() + getPointClickRadius() / mScaleY) {
-                    float r = (float) Math.sqrt((gX - p.getX()) * (gX - p.getX()) + (gY - p.getY()) * (gY - p.getY()));
+        float radiusX = getPointClickRadius() / mScaleX;
+        float radiusY = getPointClickRadius() / mScaleY;
+
+        for (Line l : mLines) {
+            // points are sorted by horizontal coordinate, only the strip under the touch is checked
+            int last = l.upperBound(gX + radiusX);
+            for (int i = l.lowerBound(gX - radiusX); i < last; i++) {
+                float pX = l.getX(i);
+                float pY = l.getY(i);
+                if (gY >= pY - radiusY && gY <= pY + radiusY) {
+                    float r = (float) Math.sqrt((gX - pX) * (gX - pX) + (gY - pY) * (gY - pY));
                     if (minR > r) {
                         minR = r;
-                        point = p;
+                        index = i;
                         line = l;
                     }
                 }
             }
-        if (mListener != null && point != null) mListener.onPointClick(point, line);
+        }
+        if (mListener != null && line != null) {
+            // changes of the point made by listener are reported by its line
+            mListener.onPointClick(line.getPoint(index), line);
+        }
     }
 
     /**
@@ -1078,17 +1460,19 @@ public class LineChartView extends View {
      *            vertical delta
      */
     public void moveViewPort(float deltaX, float deltaY) {
+        // points of lines could be changed since last move
+        limitsCorrection();
         if (mViewPortLeft + deltaX > mMinX - mViewPortHorFreedom && mViewPortRight + deltaX < mMaxX + mViewPortHorFreedom) {
             mViewPortLeft += deltaX;
             mViewPortRight += deltaX;
         } else if (deltaX > 0) {
             mViewPortLeft += mMaxX + mViewPortHorFreedom - mViewPortRight;
             mViewPortRight = mMaxX + mViewPortHorFreedom;
-            isMovingX = false;
+            mFling.stopX();
         } else if (deltaX < 0) {
             mViewPortRight += mMinX - mViewPortHorFreedom - mViewPortLeft;
             mViewPortLeft = mMinX - mViewPortHorFreedom;
-            isMovingX = false;
+            mFling.stopX();
         }
 
         if (mViewPortBottom - deltaY > mMinY - mViewPortVerFreedom && mViewPortTop - deltaY < mMaxY + mViewPortVerFreedom) {
@@ -1097,31 +1481,12 @@ public class LineChartView extends View {
         } else if (deltaY < 0) {
             mViewPortBottom -= mMaxY + mViewPortVerFreedom - mViewPortTop;
             mViewPortTop = mMaxY + mViewPortVerFreedom;
-            isMovingY = false;
-        } else if (deltaY < 0) {
+            mFling.stopY();
+        } else if (deltaY > 0) {
             mViewPortTop -= mMinY - mViewPortVerFreedom - mViewPortBottom;
             mViewPortBottom = mMinY - mViewPortVerFreedom;
-            isMovingY = false;
-        }
-    }
-
-    private void inertionMove() {
-        if (isMovingX || isMovingY) {
-            if (isMovingX) {
-                int signX = (int) Math.signum(velocityX);
-                velocityX += frictionX;
-                if (signX == (int) Math.signum(velocityX)) moveViewPort(velocityX, 0);
-                else isMovingX = false;
-            }
-            if (isMovingY) {
-                int signY = (int) Math.signum(velocityY);
-                velocityY += frictionY;
-                if (signY == (int) Math.signum(velocityY)) moveViewPort(0, velocityY);
-                else isMovingY = false;
-            }
-            postInvalidate();
+            mFling.stopY();
         }
-
     }
 
     /**
@@ -1152,4 +1517,249 @@ public class LineChartView extends View {
     public void setPointClickRadius(float pointClickRadius) {
         this.pointClickRadius = pointClickRadius;
     }
+
+    /**
+     * Gets extra distance from ViewPort sides to points which markers and texts are still drawn.
+     * 
+     * @return culling margin in pixels
+     */
+    public float getCullingMargin() {
+        return mCullingMargin;
+    }
+
+    /**
+     * Sets extra distance from ViewPort sides to points which markers and texts are still drawn. Points farther are
+     * skipped without touching. Marker sizes of {@link Line} styles are added automatically, margin should cover texts
+     * and markers of points with own style.
+     * 
+     * @param margin
+     *            culling margin in pixels
+     */
+    public void setCullingMargin(float margin) {
+        mCullingMargin = margin;
+        invalidateTiles();
+    }
+
+    /**
+     * Sets culling margin in dip.
+     * 
+     * @param margin
+     *            culling margin in dip
+     * 
+     * @see #setCullingMargin
+     */
+    public void setCullingMarginDP(float margin) {
+        mCullingMargin = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                                                   margin,
+                                                   getResources().getDisplayMetrics());
+        invalidateTiles();
+    }
+
+    /**
+     * Enables offscreen cache of chart content. Content is rendered on background threads into bitmap tiles, so
+     * panning only composes them. Until tiles are ready chart is drawn directly.
+     * 
+     * @param enabled
+     *            is tile cache used?
+     * 
+     * @see #setTileCacheBudget
+     * @see #invalidateTiles
+     */
+    public void setTileCacheEnabled(boolean enabled) {
+        if (enabled == (mTileCache != null)) return;
+        if (enabled) {
+            mTileCache = new TileCache(this);
+            mTileCache.setBudget(mTileCacheBudget);
+        } else {
+            mTileCache.release();
+            mTileCache = null;
+        }
+        invalidatePlot();
+    }
+
+    /**
+     * @return true if tile cache is used
+     */
+    public boolean isTileCacheEnabled() {
+        return mTileCache != null;
+    }
+
+    /**
+     * Sets memory limit for bitmaps of tile cache. Least recently used tiles are dropped first, tiles on screen are
+     * always kept.
+     * 
+     * @param bytes
+     *            budget in bytes, 8 MB by default
+     */
+    public void setTileCacheBudget(long bytes) {
+        mTileCacheBudget = bytes;
+        if (mTileCache != null) mTileCache.setBudget(bytes);
+    }
+
+    /**
+     * Marks all tiles of tile cache as outdated. Changes of {@link Line} points and styles are tracked automatically,
+     * call it after changing {@link LinePoint} attached to a line.
+     */
+    public void invalidateTiles() {
+        if (mTileCache == null) return;
+        if (mUpdateDepth > 0) isTilesPending = true;
+        else mTileCache.clear();
+        invalidatePlot();
+    }
+
+    /**
+     * Starts batch update. Until the matching {@link #endUpdate()} limits of ViewPort moving are not recalculated,
+     * tiles are not invalidated and redrawing is not requested; all of it is done once at the end. Batches may be
+     * nested, the outermost one does the work. Changes of lines added to the view are collected too, use
+     * {@link Line#beginUpdate()} to skip per-point work of lines themselves. Must be called on UI thread.
+     * 
+     * @see #batch(Runnable)
+     */
+    public void beginUpdate() {
+        mUpdateDepth++;
+    }
+
+    /**
+     * Ends batch update started by {@link #beginUpdate()}.
+     * 
+     * @throws IllegalStateException
+     *             if there is no batch update
+     */
+    public void endUpdate() {
+        if (mUpdateDepth == 0) throw new IllegalStateException("endUpdate() without beginUpdate()");
+        if (--mUpdateDepth > 0) return;
+        if (isLimitsPending) limitsCorrection();
+        if (mTileCache != null) {
+            if (isTilesPending) mTileCache.clear();
+            else if (mPendingFromX <= mPendingToX) mTileCache.invalidate(mPendingFromX, mPendingToX);
+        }
+        if (!mPendingDirty.isEmpty()) {
+            postInvalidate(mPendingDirty.left, mPendingDirty.top, mPendingDirty.right, mPendingDirty.bottom);
+        }
+        isLimitsPending = false;
+        isTilesPending = false;
+        mPendingFromX = Float.MAX_VALUE;
+        mPendingToX = -Float.MAX_VALUE;
+        mPendingDirty.setEmpty();
+    }
+
+    /**
+     * Runs the changes as one batch update, the batch is ended even if they throw.
+     * 
+     * @param changes
+     *            code changing the view or its lines
+     * 
+     * @see #beginUpdate()
+     */
+    public void batch(Runnable changes) {
+        beginUpdate();
+        try {
+            changes.run();
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Sets simplifications of drawing while chart is dragged or flung. Full quality is drawn after movement stops for
+     * idle delay.
+     * 
+     * @param flags
+     *            combination of {@link DraftQuality} flags, 0 to draw full quality always
+     * 
+     * @see #setDraftIdleDelay
+     */
+    public void setDraftQuality(int flags) {
+        mDraftQuality = flags;
+        if (isDraft) invalidatePlot();
+    }
+
+    /**
+     * @return combination of {@link DraftQuality} flags used while chart is moving
+     */
+    public int getDraftQuality() {
+        return mDraftQuality;
+    }
+
+    /**
+     * Sets time after the last movement when full quality is drawn again.
+     * 
+     * @param millis
+     *            delay in milliseconds, 150 by default
+     */
+    public void setDraftIdleDelay(long millis) {
+        mDraftIdleDelay = millis;
+    }
+
+    /**
+     * @return time in milliseconds after the last movement when full quality is drawn again
+     */
+    public long getDraftIdleDelay() {
+        return mDraftIdleDelay;
+    }
+
+    private boolean isDraft(int flag) {
+        return isDraft && (mDraftQuality & flag) != 0;
+    }
+
+    private void startDraft() {
+        removeCallbacks(mSettleDraft);
+        isDraft = mDraftQuality != 0;
+    }
+
+    private void settleDraft() {
+        if (!isDraft) return;
+        removeCallbacks(mSettleDraft);
+        postDelayed(mSettleDraft, mDraftIdleDelay);
+    }
+
+    /**
+     * Lets lines with data source load points around ViewPort. Loaded points are swapped in before drawing.
+     */
+    private void requestData() {
+        for (int i = 0; i < mLines.size(); i++) {
+            mLines.get(i).requestData(mViewPortLeft, mViewPortRight, mScaleX);
+        }
+    }
+
+    /**
+     * @return handler of the thread lines and view state are changed on or null if the thread isn't running
+     */
+    Handler getModelHandler() {
+        return mMainHandler;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attach();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        release();
+    }
+
+    /**
+     * Resumes the chart on the thread of the model when it starts running.
+     */
+    void attach() {
+        // posted drain could be dropped with the thread of the model while detached
+        mDrainSamples.run();
+    }
+
+    /**
+     * Stops animations and background work of the chart before the thread of the model stops. Caches are dropped,
+     * the chart may be attached again.
+     */
+    void release() {
+        mFling.stop();
+        removeCallbacks(mSettleDraft);
+        isDraft = false;
+        if (mTileCache != null) mTileCache.release();
+        for (int i = 0; i < mLines.size(); i++) {
+            mLines.get(i).cancelBackgroundWork();
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package com.polonium.linechart;
+
+import android.graphics.Path;
+
+/**
+ * Immutable paths of a {@link Line} built from a copy of its points. Snapshot is never changed after it is built, so
+ * it can be drawn while a newer one is built on another thread.
+ */
+final class LineGeometry {
+
+    /** Interrupted thread is checked after this count of segments. */
+    private static final int CANCEL_CHECK_STEP = 1024;
+
+    final Path path;
+    final Path filledPath;
+    final int modCount;
+    /** Count of points the paths go through. */
+    final int size;
+
+    private LineGeometry(Path path, Path filledPath, int modCount, int size) {
+        this.path = path;
+        this.filledPath = filledPath;
+        this.modCount = modCount;
+        this.size = size;
+    }
+
+    /**
+     * Builds path and path for filling underline space.
+     *
+     * @param xs
+     *            horizontal coordinates sorted ascending
+     * @param ys
+     *            vertical coordinates
+     * @param subPoints
+     *            count of spline sub points, 0 for straight segments
+     * @param modCount
+     *            modification count of the line the points were copied at
+     * @return snapshot or null if current thread was interrupted
+     */
+    static LineGeometry build(float[] xs, float[] ys, int subPoints, int modCount) {
+        Path path = new Path();
+        int size = xs.length;
+        if (size > 0) {
+            path.moveTo(xs[0], ys[0]);
+            // spline needs at least 4 points
+            if (subPoints > 0 && size > 3) {
+                double[] dataX = new double[size];
+                double[] dataY = new double[size];
+                for (int i = 0; i < size; i++) {
+                    dataX[i] = xs[i];
+                    dataY[i] = ys[i];
+                }
+                if (!appendSpline(path, dataX, dataY, subPoints)) return null;
+            } else {
+                for (int i = 1; i < size; i++) {
+                    if (i % CANCEL_CHECK_STEP == 0 && Thread.currentThread().isInterrupted()) return null;
+                    path.lineTo(xs[i], ys[i]);
+                }
+            }
+        }
+        Path filledPath = new Path(path);
+        if (size > 0) {
+            filledPath.lineTo(xs[size - 1], 0);
+            filledPath.lineTo(xs[0], 0);
+            filledPath.close();
+        }
+        return new LineGeometry(path, filledPath, modCount, size);
+    }
+
+    /**
+     * Adds to the path segments of cubic spline through the points, the path should start at the first point.
+     *
+     * @return false if current thread was interrupted
+     */
+    static boolean appendSpline(Path path, double[] dataX, double[] dataY, int subPoints) {
+        Spline sp = new Spline(dataX, dataY);
+        for (int i = 0; i < dataX.length - 1; i += 1) {
+            if (i % CANCEL_CHECK_STEP == 0 && i > 0 && Thread.currentThread().isInterrupted()) return false;
+            double step = (dataX[i + 1] - dataX[i]) / (subPoints + 1);
+            for (int j = 1; j <= subPoints; j++) {
+                double x = dataX[i] + step * j;
+                path.lineTo((float) x, (float) sp.spline_value(x));
+            }
+            path.lineTo((float) dataX[i + 1], (float) dataY[i + 1]);
+        }
+        return true;
+    }
+}
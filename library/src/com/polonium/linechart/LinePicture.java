@@ -0,0 +1,82 @@
+package com.polonium.linechart;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.RectF;
+import android.os.Build;
+
+/**
+ * Recorded drawing of a {@link Line} in pixels. It is recorded again only when the line version or the scale is
+ * changed, moving of ViewPort is done by translating the canvas before replaying.
+ */
+final class LinePicture {
+
+    private final Picture mPicture = new Picture();
+    private final RectF mBounds = new RectF();
+    private int mVersion;
+    private float mScaleX = Float.NaN;
+    private float mScaleY = Float.NaN;
+    private float mLeft;
+    private float mTop;
+
+    /**
+     * Pictures are not replayed by hardware accelerated canvas before Android 6.0.
+     *
+     * @return true if the canvas can replay pictures
+     */
+    static boolean isSupported(Canvas canvas) {
+        return !canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= 23;
+    }
+
+    /**
+     * @return true if recording matches the version and the scale
+     */
+    boolean isValid(int version, float scaleX, float scaleY) {
+        return version == mVersion && scaleX == mScaleX && scaleY == mScaleY;
+    }
+
+    /**
+     * Records filling and stroke of the line. Picture keeps its own copy of paints state.
+     *
+     * @param path
+     *            path in pixels with chart zero at origin
+     * @param paint
+     *            paint of the line
+     * @param filledPath
+     *            path of underline space or null
+     * @param filledPaint
+     *            paint of underline space
+     */
+    void record(int version, float scaleX, float scaleY, Path path, Paint paint, Path filledPath, Paint filledPaint) {
+        path.computeBounds(mBounds, false);
+        if (filledPath != null) {
+            RectF bounds = new RectF();
+            filledPath.computeBounds(bounds, false);
+            mBounds.union(bounds.left, bounds.top, bounds.right, bounds.bottom);
+        }
+        // picture is culled by its size, so content is moved to the corner and stroke is kept inside
+        float inset = paint.getStrokeWidth() * 2 + 1;
+        mLeft = mBounds.left - inset;
+        mTop = mBounds.top - inset;
+        Canvas canvas = mPicture.beginRecording((int) Math.ceil(mBounds.width() + 2 * inset),
+                                                (int) Math.ceil(mBounds.height() + 2 * inset));
+        canvas.translate(-mLeft, -mTop);
+        if (filledPath != null) canvas.drawPath(filledPath, filledPaint);
+        canvas.drawPath(path, paint);
+        mPicture.endRecording();
+        mVersion = version;
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+    }
+
+    /**
+     * Replays the recording. Canvas should be translated to chart zero.
+     */
+    void draw(Canvas canvas) {
+        canvas.translate(mLeft, mTop);
+        canvas.drawPicture(mPicture);
+        canvas.translate(-mLeft, -mTop);
+    }
+}
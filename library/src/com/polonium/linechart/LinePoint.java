@@ -2,25 +2,29 @@ package com.polonium.linechart;
 
 import android.content.Context;
 import android.graphics.Paint;
-import android.graphics.Paint.Style;
-import android.util.TypedValue;
+import android.util.DisplayMetrics;
 
 /**
- * The Class LinePoint.
+ * The Class LinePoint. Look of the point is described by shared {@link PointStyle}, paints are copied for the point
+ * only when they are requested for changing.
  */
 public class LinePoint {
 
+    private static final int OWN_STROKE_PAINT = 0x1;
+    private static final int OWN_FILL_PAINT = 0x2;
+    private static final int OWN_TEXT_PAINT = 0x4;
+
     private float x = 0;
     private float y = 0;
     private boolean isVisible = false;
-    private Paint strokePaint = new Paint();
-    private Paint fillPaint = new Paint();
-    private Paint textPaint = new Paint();
-    private Type type = Type.CIRCLE;
-    private float radius = 5;
+    private PointStyle style;
+    private int ownPaints = 0;
     private String text = "";
     private boolean isTextVisible = false;
-    private int textAlign = TextAlign.HORIZONTAL_CENTER | TextAlign.TOP;
+    /** Line the point belongs to, null if it isn't in a line. */
+    private Line line;
+    /** False while the point is a copy made for reading, it is attached to the line on first change. */
+    private boolean isAttached = true;
 
     /**
      * Type of Point visualisation in {@link com.polonium.linechart.LineChartView LineChartView}.
@@ -45,7 +49,35 @@ public class LinePoint {
      *            vertical coordinate
      */
     public LinePoint(Context context, float x, float y) {
-        init(context);
+        style = PointStyle.getDefault(context);
+        setPosition(x, y);
+    }
+
+    /**
+     * Instantiates a new line point with default style.
+     * 
+     * @param x
+     *            horizontal coordinate
+     * @param y
+     *            vertical coordinate
+     */
+    public LinePoint(float x, float y) {
+        style = PointStyle.getDefault();
+        setPosition(x, y);
+    }
+
+    /**
+     * Instantiates a new line point.
+     * 
+     * @param x
+     *            horizontal coordinate
+     * @param y
+     *            vertical coordinate
+     * @param style
+     *            style of the point
+     */
+    public LinePoint(float x, float y, PointStyle style) {
+        this.style = style;
         setPosition(x, y);
     }
 
@@ -56,7 +88,22 @@ public class LinePoint {
      *            the context
      */
     public LinePoint(Context context) {
-        init(context);
+        style = PointStyle.getDefault(context);
+    }
+
+    /**
+     * Instantiates a new line point. Used by {@link Line} to create points on demand.
+     * 
+     * @param metrics
+     *            display metrics for default sizes
+     * @param x
+     *            horizontal coordinate
+     * @param y
+     *            vertical coordinate
+     */
+    LinePoint(DisplayMetrics metrics, float x, float y) {
+        style = PointStyle.getDefault(metrics);
+        setPosition(x, y);
     }
 
     /**
@@ -74,20 +121,28 @@ public class LinePoint {
         return this;
     }
    
-    private void init(Context context) {
-        getStrokePaint().setColor(0xff33b5e5);
-        getStrokePaint().setStyle(Style.STROKE);
-        getStrokePaint().setAntiAlias(true);
-        getStrokePaint().setStrokeWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
-                                                                  2,
-                                                                  context.getResources().getDisplayMetrics()));
-        getFillPaint().setColor(0xffffffff);
+    /**
+     * Gets the style of the point.
+     * 
+     * @return style
+     */
+    public PointStyle getStyle() {
+        return style;
+    }
 
-        getTextPaint().setColor(0xcc444444);
-        getTextPaint().setAntiAlias(true);
-        getTextPaint().setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
-                                                             10,
-                                                             context.getResources().getDisplayMetrics()));
+    /**
+     * Sets shared {@link PointStyle} of the point. Paints of the style are not copied.
+     * 
+     * @param style
+     *            style
+     * @return this
+     */
+    public LinePoint setStyle(PointStyle style) {
+        attach();
+        this.style = style;
+        ownPaints = 0;
+        changed();
+        return this;
     }
 
     /**
@@ -99,13 +154,15 @@ public class LinePoint {
     }
 
     /**
-     * Sets horizontal coordinate.
+     * Sets horizontal coordinate. Point of a line is moved in it, so points stay sorted.
      * 
      * @param x
      *            horizontal coordinate
      * @return this
      */
     public LinePoint setX(float x) {
+        attach();
+        if (line != null) line.movePoint(this, x, y);
         this.x = x;
         return this;
     }
@@ -127,6 +184,8 @@ public class LinePoint {
      * @return this
      */
     public LinePoint setY(float y) {
+        attach();
+        if (line != null) line.movePoint(this, x, y);
         this.y = y;
         return this;
     }
@@ -158,7 +217,9 @@ public class LinePoint {
      * @return this
      */
     public LinePoint setVisible(boolean isVisible) {
+        attach();
         this.isVisible = isVisible;
+        changed();
         return this;
     }
 
@@ -168,7 +229,14 @@ public class LinePoint {
      * @see #setStrokePaint
      */
     public Paint getStrokePaint() {
-        return strokePaint;
+        attach();
+        if ((ownPaints & OWN_STROKE_PAINT) == 0) {
+            // paint of shared style may be changed by caller
+            style = style.withStrokePaint(new Paint(style.getStrokePaint()));
+            ownPaints |= OWN_STROKE_PAINT;
+        }
+        changed();
+        return style.getStrokePaint();
     }
 
     /**
@@ -181,7 +249,10 @@ public class LinePoint {
      * @see #getStrokePaint
      */
     public LinePoint setStrokePaint(Paint strokePaint) {
-        this.strokePaint = strokePaint;
+        attach();
+        style = style.withStrokePaint(strokePaint);
+        ownPaints |= OWN_STROKE_PAINT;
+        changed();
         return this;
     }
 
@@ -191,7 +262,13 @@ public class LinePoint {
      * @see #setFillPaint
      */
     public Paint getFillPaint() {
-        return fillPaint;
+        attach();
+        if ((ownPaints & OWN_FILL_PAINT) == 0) {
+            style = style.withFillPaint(new Paint(style.getFillPaint()));
+            ownPaints |= OWN_FILL_PAINT;
+        }
+        changed();
+        return style.getFillPaint();
     }
 
     /**
@@ -202,7 +279,10 @@ public class LinePoint {
      * @return this
      */
     public LinePoint setFillPaint(Paint fillPaint) {
-        this.fillPaint = fillPaint;
+        attach();
+        style = style.withFillPaint(fillPaint);
+        ownPaints |= OWN_FILL_PAINT;
+        changed();
         return this;
     }
 
@@ -214,7 +294,13 @@ public class LinePoint {
      * @see #setTextPaint
      */
     public Paint getTextPaint() {
-        return textPaint;
+        attach();
+        if ((ownPaints & OWN_TEXT_PAINT) == 0) {
+            style = style.withTextPaint(new Paint(style.getTextPaint()));
+            ownPaints |= OWN_TEXT_PAINT;
+        }
+        changed();
+        return style.getTextPaint();
     }
 
     /**
@@ -227,7 +313,10 @@ public class LinePoint {
      * @see #getTextPaint
      */
     public LinePoint setTextPaint(Paint textPaint) {
-        this.textPaint = textPaint;
+        attach();
+        style = style.withTextPaint(textPaint);
+        ownPaints |= OWN_TEXT_PAINT;
+        changed();
         return this;
     }
 
@@ -237,7 +326,7 @@ public class LinePoint {
      * @return the type
      */
     public Type getType() {
-        return type;
+        return style.getType();
     }
 
     /**
@@ -248,7 +337,9 @@ public class LinePoint {
      * @return this
      */
     public LinePoint setType(Type type) {
-        this.type = type;
+        attach();
+        style = style.withType(type);
+        changed();
         return this;
     }
 
@@ -257,7 +348,7 @@ public class LinePoint {
      * @return radius of the point for visualisation in pixels
      */
     public float getRadius() {
-        return radius;
+        return style.getRadius();
     }
 
     /**
@@ -268,7 +359,9 @@ public class LinePoint {
      * @return this
      */
     public LinePoint setRadius(float radius) {
-        this.radius = radius;
+        attach();
+        style = style.withRadius(radius);
+        changed();
         return this;
     }
 
@@ -287,7 +380,9 @@ public class LinePoint {
      * @return this
      */
     public LinePoint setText(String text) {
+        attach();
         this.text = text;
+        changed();
         return this;
     }
 
@@ -310,7 +405,9 @@ public class LinePoint {
      * @see #isTextVisible()
      */
     public LinePoint setTextVisible(boolean isTextVisible) {
+        attach();
         this.isTextVisible = isTextVisible;
+        changed();
         return this;
     }
 
@@ -319,7 +416,7 @@ public class LinePoint {
      * @return {@link com.polonium.linechart.TextAlign TextAlign} for the text
      */
     public int getTextAlign() {
-        return textAlign;
+        return style.getTextAlign();
     }
 
     /**
@@ -330,8 +427,48 @@ public class LinePoint {
      * @return this
      */
     public LinePoint setTextAlign(int textAlign) {
-        this.textAlign = textAlign;
+        attach();
+        style = style.withTextAlign(textAlign);
+        changed();
         return this;
     }
 
+    /**
+     * Makes the point attach itself to the line on first change. Used by {@link Line} for points created for reading.
+     */
+    LinePoint detachedFrom(Line line) {
+        this.line = line;
+        isAttached = false;
+        return this;
+    }
+
+    /**
+     * Called by {@link Line} when the point is kept by it, changes of the point are reported to the line.
+     */
+    void attachedTo(Line line) {
+        this.line = line;
+        isAttached = true;
+    }
+
+    /**
+     * Called by {@link Line} when the point is removed from it.
+     */
+    void detach() {
+        line = null;
+        isAttached = true;
+    }
+
+    private void attach() {
+        if (isAttached) return;
+        isAttached = true;
+        line.attachPoint(this);
+    }
+
+    /**
+     * Reports change of look of the point to its line. Paints returned for changing are reported when they are
+     * requested, they are changed before the next frame.
+     */
+    private void changed() {
+        if (line != null) line.onPointChanged(this);
+    }
 }
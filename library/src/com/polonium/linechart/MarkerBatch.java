@@ -0,0 +1,122 @@
+package com.polonium.linechart;
+
+import java.util.Arrays;
+
+import com.polonium.linechart.LinePoint.Type;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * Markers of one look collected during the frame and drawn together. Fills of circles and squares are drawn as round
+ * and square points of marker size with one {@link android.graphics.Canvas#drawPoints(float[], int, int, Paint)
+ * drawPoints} call, outlines are added to one reusable {@link android.graphics.Path Path} stroked once; triangles are
+ * added to a path filled and stroked once. Markers with translucent paints or paint effects would be composited
+ * differently, so they are drawn one by one.
+ */
+final class MarkerBatch {
+
+    private final PointStyle mStyle;
+    private final boolean isBatched;
+    private final Paint mFillPaint;
+    private final Path mPath = new Path();
+    private float[] mPoints = new float[64];
+    private int mCount = 0;
+
+    MarkerBatch(PointStyle style) {
+        mStyle = style;
+        isBatched = isOpaque(style.getFillPaint()) && isOpaque(style.getStrokePaint())
+                    && style.getFillPaint().getStyle() != Paint.Style.STROKE;
+        mFillPaint = new Paint(style.getFillPaint());
+        mFillPaint.setStyle(Paint.Style.STROKE);
+        mFillPaint.setStrokeCap(style.getType() == Type.SQUARE ? Paint.Cap.SQUARE : Paint.Cap.ROUND);
+        mFillPaint.setStrokeWidth(2 * style.getRadius());
+    }
+
+    /**
+     * @return true if drawing with the paint doesn't depend on what is under it and how shapes are combined
+     */
+    private static boolean isOpaque(Paint paint) {
+        return paint.getAlpha() == 255 && paint.getShader() == null && paint.getPathEffect() == null
+               && paint.getXfermode() == null && paint.getMaskFilter() == null && paint.getColorFilter() == null;
+    }
+
+    /**
+     * @return true if markers of the style look the same as markers of this batch
+     */
+    boolean matches(PointStyle style) {
+        return style == mStyle
+               || (style.getType() == mStyle.getType() && style.getRadius() == mStyle.getRadius()
+                   && isSame(style.getStrokePaint(), mStyle.getStrokePaint()) && isSame(style.getFillPaint(),
+                                                                                          mStyle.getFillPaint()));
+    }
+
+    private static boolean isSame(Paint a, Paint b) {
+        return a == b
+               || (a.getColor() == b.getColor() && a.getStrokeWidth() == b.getStrokeWidth()
+                   && a.isAntiAlias() == b.isAntiAlias() && a.getStyle() == b.getStyle()
+                   && a.getShader() == b.getShader() && a.getPathEffect() == b.getPathEffect()
+                   && a.getXfermode() == b.getXfermode() && a.getMaskFilter() == b.getMaskFilter()
+                   && a.getColorFilter() == b.getColorFilter());
+    }
+
+    /**
+     * @return true if there are no markers to draw
+     */
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * Adds marker centered at the position in pixels.
+     */
+    void add(float x, float y) {
+        if (mCount + 2 > mPoints.length) {
+            mPoints = Arrays.copyOf(mPoints, mPoints.length * 2);
+        }
+        mPoints[mCount++] = x;
+        mPoints[mCount++] = y;
+        if (isBatched) addShape(mPath, x, y);
+    }
+
+    private void addShape(Path path, float x, float y) {
+        float radius = mStyle.getRadius();
+        if (mStyle.getType() == Type.TRIANGLE) {
+            path.moveTo(x, y - radius);
+            path.lineTo(x - 0.86f * radius, y + 0.5f * radius);
+            path.lineTo(x + 0.86f * radius, y + 0.5f * radius);
+            path.close();
+        } else if (mStyle.getType() == Type.SQUARE) {
+            path.addRect(x - radius, y - radius, x + radius, y + radius, Path.Direction.CW);
+        } else {
+            path.addCircle(x, y, radius, Path.Direction.CW);
+        }
+    }
+
+    /**
+     * Draws all added markers and clears the batch.
+     *
+     * @param canvas
+     *            canvas
+     */
+    void draw(Canvas canvas) {
+        if (mCount == 0) return;
+        if (!isBatched) {
+            for (int i = 0; i < mCount; i += 2) {
+                mPath.rewind();
+                addShape(mPath, mPoints[i], mPoints[i + 1]);
+                canvas.drawPath(mPath, mStyle.getFillPaint());
+                canvas.drawPath(mPath, mStyle.getStrokePaint());
+            }
+        } else if (mStyle.getType() == Type.TRIANGLE) {
+            canvas.drawPath(mPath, mStyle.getFillPaint());
+            canvas.drawPath(mPath, mStyle.getStrokePaint());
+        } else {
+            canvas.drawPoints(mPoints, 0, mCount, mFillPaint);
+            canvas.drawPath(mPath, mStyle.getStrokePaint());
+        }
+        mPath.rewind();
+        mCount = 0;
+    }
+}
@@ -0,0 +1,238 @@
+package com.polonium.linechart;
+
+import java.util.Arrays;
+
+/**
+ * Multi-resolution index of {@link Line} points. Level <i>k</i> splits points into buckets of 2<sup>k</sup>
+ * consecutive points and keeps indexes of minimal and maximal point of each bucket, so envelope of any range can be
+ * found by touching count of buckets instead of count of points. Levels start from {@link #BASE_LEVEL}, which limits
+ * memory overhead to about two bytes per point. Buckets are counted from the first point the pyramid was built for, so
+ * evicting the first point of a ring buffer only moves the origin; buckets holding evicted points are never used for
+ * lookups and are dropped in chunks.
+ */
+final class MinMaxPyramid {
+
+    static final int BASE_LEVEL = 3;
+
+    private int[][] mMinIndexes = new int[0][];
+    private int[][] mMaxIndexes = new int[0][];
+    /** Count of buckets of each level, including dropped ones. */
+    private int[] mCounts = new int[0];
+    /** Count of dropped buckets at the start of arrays of each level. */
+    private int[] mOffsets = new int[0];
+    /** Count of evicted points, position of the first point of the line. */
+    private int mOrigin = 0;
+    /** Count of points including evicted ones. */
+    private int mSize = 0;
+    private boolean isValid = false;
+
+    /**
+     * @return true if pyramid matches points of the line
+     */
+    boolean isValid() {
+        return isValid;
+    }
+
+    /**
+     * Marks pyramid as outdated, it will be rebuilt by {@link #build}.
+     */
+    void invalidate() {
+        isValid = false;
+    }
+
+    /**
+     * Builds all levels in O(n): base level from points, each next level from pairs of buckets of previous one.
+     *
+     * @param line
+     *            line with points
+     */
+    void build(Line line) {
+        int n = line.getPointsCount();
+        int levels = 0;
+        while ((n - 1) >> (BASE_LEVEL + levels) > 0) {
+            levels++;
+        }
+        levels = n > 0 ? levels + 1 : 0;
+        mMinIndexes = Arrays.copyOf(mMinIndexes, levels);
+        mMaxIndexes = Arrays.copyOf(mMaxIndexes, levels);
+        mCounts = new int[levels];
+        mOffsets = new int[levels];
+        mOrigin = 0;
+        mSize = n;
+        isValid = true;
+        if (levels == 0) return;
+
+        int size = 1 << BASE_LEVEL;
+        int count = (n + size - 1) >> BASE_LEVEL;
+        ensureCapacity(0, count);
+        int[] mins = mMinIndexes[0];
+        int[] maxs = mMaxIndexes[0];
+        for (int b = 0; b < count; b++) {
+            int min = b * size;
+            int max = min;
+            int end = Math.min(min + size, n);
+            for (int i = min + 1; i < end; i++) {
+                if (line.getY(i) < line.getY(min)) min = i;
+                if (line.getY(i) > line.getY(max)) max = i;
+            }
+            mins[b] = min;
+            maxs[b] = max;
+        }
+        mCounts[0] = count;
+
+        for (int l = 1; l < levels; l++) {
+            count = (mCounts[l - 1] + 1) >> 1;
+            ensureCapacity(l, count);
+            for (int b = 0; b < count; b++) {
+                combine(line, l, b);
+            }
+            mCounts[l] = count;
+        }
+    }
+
+    /**
+     * Adds the last point of the line to pyramid in O(levels).
+     *
+     * @param line
+     *            line with the point appended after points known to pyramid
+     */
+    void append(Line line) {
+        int index = mSize++;
+        float y = line.getY(index - mOrigin);
+        for (int l = 0; l < mCounts.length; l++) {
+            int b = index >> (BASE_LEVEL + l);
+            int slot = b - mOffsets[l];
+            if (b == mCounts[l]) {
+                ensureCapacity(l, slot + 1);
+                mMinIndexes[l][slot] = index;
+                mMaxIndexes[l][slot] = index;
+                mCounts[l]++;
+            } else {
+                if (!isLive(mMinIndexes[l][slot]) || y < getY(line, mMinIndexes[l][slot])) {
+                    mMinIndexes[l][slot] = index;
+                }
+                if (!isLive(mMaxIndexes[l][slot]) || y > getY(line, mMaxIndexes[l][slot])) {
+                    mMaxIndexes[l][slot] = index;
+                }
+            }
+        }
+        // top level got second bucket: add level above it
+        if (mCounts.length == 0 || mCounts[mCounts.length - 1] > 1) {
+            int l = mCounts.length;
+            mMinIndexes = Arrays.copyOf(mMinIndexes, l + 1);
+            mMaxIndexes = Arrays.copyOf(mMaxIndexes, l + 1);
+            mCounts = Arrays.copyOf(mCounts, l + 1);
+            mOffsets = Arrays.copyOf(mOffsets, l + 1);
+            ensureCapacity(l, 1);
+            if (l == 0) {
+                mMinIndexes[0][0] = index;
+                mMaxIndexes[0][0] = index;
+            } else {
+                combine(line, l, 0);
+            }
+            mCounts[l] = 1;
+        }
+    }
+
+    private void combine(Line line, int level, int bucket) {
+        int[] mins = mMinIndexes[level - 1];
+        int[] maxs = mMaxIndexes[level - 1];
+        // lower level drops buckets only after it has many, so children of new bucket are kept
+        int left = (bucket << 1) - mOffsets[level - 1];
+        int right = left + 1;
+        int min = mins[left];
+        int max = maxs[left];
+        if (right + mOffsets[level - 1] < mCounts[level - 1]) {
+            if (!isLive(min) || isLive(mins[right]) && getY(line, mins[right]) < getY(line, min)) min = mins[right];
+            if (!isLive(max) || isLive(maxs[right]) && getY(line, maxs[right]) > getY(line, max)) max = maxs[right];
+        }
+        mMinIndexes[level][bucket - mOffsets[level]] = min;
+        mMaxIndexes[level][bucket - mOffsets[level]] = max;
+    }
+
+    /**
+     * Forgets the first point of the line in amortized O(levels).
+     */
+    void evictFirst() {
+        mOrigin++;
+        // positions are rebased by full rebuild long before they overflow
+        if (mOrigin > 1 << 30) {
+            invalidate();
+            return;
+        }
+        for (int l = 0; l < mCounts.length; l++) {
+            // buckets before the one holding the first point contain evicted points only
+            int dead = (mOrigin >> (BASE_LEVEL + l)) - mOffsets[l];
+            int[] mins = mMinIndexes[l];
+            if (dead > 16 && dead > mins.length >> 1) {
+                int live = mCounts[l] - mOffsets[l] - dead;
+                System.arraycopy(mins, dead, mins, 0, live);
+                System.arraycopy(mMaxIndexes[l], dead, mMaxIndexes[l], 0, live);
+                mOffsets[l] += dead;
+            }
+        }
+    }
+
+    private boolean isLive(int index) {
+        return index >= mOrigin;
+    }
+
+    private float getY(Line line, int index) {
+        return line.getY(index - mOrigin);
+    }
+
+    private void ensureCapacity(int level, int capacity) {
+        int[] mins = mMinIndexes[level];
+        if (mins != null && mins.length >= capacity) return;
+        int length = mins == null ? Math.max(capacity, 16) : Math.max(capacity, mins.length + (mins.length >> 1));
+        mMinIndexes[level] = mins == null ? new int[length] : Arrays.copyOf(mins, length);
+        mMaxIndexes[level] = mins == null ? new int[length] : Arrays.copyOf(mMaxIndexes[level], length);
+    }
+
+    /**
+     * Finds the highest level with buckets not bigger than <i>maxBucketSize</i> points.
+     *
+     * @return level or -1 if buckets of base level are already bigger
+     */
+    int levelFor(double maxBucketSize) {
+        int level = -1;
+        for (int l = 0; l < mCounts.length && (1 << (BASE_LEVEL + l)) <= maxBucketSize; l++) {
+            level = BASE_LEVEL + l;
+        }
+        return level;
+    }
+
+    /**
+     * @return true if the point of the line starts a bucket of the level
+     */
+    boolean isBucketStart(int level, int index) {
+        return ((index + mOrigin) & ((1 << level) - 1)) == 0;
+    }
+
+    /**
+     * @return index of minimal point of the bucket starting at the point
+     */
+    int getMinIndex(int level, int index) {
+        int l = level - BASE_LEVEL;
+        return mMinIndexes[l][((index + mOrigin) >> level) - mOffsets[l]] - mOrigin;
+    }
+
+    /**
+     * @return index of maximal point of the bucket starting at the point
+     */
+    int getMaxIndex(int level, int index) {
+        int l = level - BASE_LEVEL;
+        return mMaxIndexes[l][((index + mOrigin) >> level) - mOffsets[l]] - mOrigin;
+    }
+
+    /**
+     * @return bytes allocated for the pyramid
+     */
+    long getMemoryUsage() {
+        long bytes = 0;
+        for (int l = 0; l < mCounts.length; l++) {
+            if (mMinIndexes[l] != null) bytes += 8L * mMinIndexes[l].length;
+        }
+        return bytes;
+    }
+}
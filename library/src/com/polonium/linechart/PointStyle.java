@@ -0,0 +1,218 @@
+package com.polonium.linechart;
+
+import com.polonium.linechart.LinePoint.Type;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+/**
+ * Immutable look of the point in {@link com.polonium.linechart.LineChartView LineChartView}. One style can be shared by
+ * any count of points and lines, so points don't need own {@link android.graphics.Paint Paint} objects. Paints of the
+ * style must not be changed after it was created, use <i>with</i> methods to get changed copy.
+ */
+public class PointStyle {
+
+    private static PointStyle sDefault;
+
+    private final Type type;
+    private final float radius;
+    private final Paint strokePaint;
+    private final Paint fillPaint;
+    private final Paint textPaint;
+    private final int textAlign;
+
+    /**
+     * Instantiates a new point style. Paints are used as is and must not be changed later.
+     *
+     * @param type
+     *            type of point visualisation
+     * @param radius
+     *            radius in pixels
+     * @param strokePaint
+     *            stroke {@link android.graphics.Paint Paint}
+     * @param fillPaint
+     *            {@link android.graphics.Paint Paint} to fill center of point
+     * @param textPaint
+     *            {@link android.graphics.Paint Paint} for text near point
+     * @param textAlign
+     *            bitmask from {@link com.polonium.linechart.TextAlign TextAlign}
+     */
+    public PointStyle(Type type, float radius, Paint strokePaint, Paint fillPaint, Paint textPaint, int textAlign) {
+        this.type = type;
+        this.radius = radius;
+        this.strokePaint = strokePaint;
+        this.fillPaint = fillPaint;
+        this.textPaint = textPaint;
+        this.textAlign = textAlign;
+    }
+
+    /**
+     * Gets default style using system display metrics.
+     *
+     * @return shared default style
+     */
+    public static PointStyle getDefault() {
+        return getDefault(Resources.getSystem().getDisplayMetrics());
+    }
+
+    /**
+     * Gets default style using display metrics of the context.
+     *
+     * @param context
+     *            context
+     * @return shared default style
+     */
+    public static PointStyle getDefault(Context context) {
+        return getDefault(context.getResources().getDisplayMetrics());
+    }
+
+    static synchronized PointStyle getDefault(DisplayMetrics metrics) {
+        float strokeWidth = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 2, metrics);
+        float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 10, metrics);
+        if (sDefault == null || sDefault.strokePaint.getStrokeWidth() != strokeWidth
+            || sDefault.textPaint.getTextSize() != textSize) {
+            Paint stroke = new Paint();
+            stroke.setColor(0xff33b5e5);
+            stroke.setStyle(Style.STROKE);
+            stroke.setAntiAlias(true);
+            stroke.setStrokeWidth(strokeWidth);
+
+            Paint fill = new Paint();
+            fill.setColor(0xffffffff);
+
+            Paint text = new Paint();
+            text.setColor(0xcc444444);
+            text.setAntiAlias(true);
+            text.setTextSize(textSize);
+            sDefault = new PointStyle(Type.CIRCLE,
+                                      5,
+                                      stroke,
+                                      fill,
+                                      text,
+                                      TextAlign.HORIZONTAL_CENTER | TextAlign.TOP);
+        }
+        return sDefault;
+    }
+
+    /**
+     * @return type of point visualisation
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return radius of the point for visualisation in pixels
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return stroke {@link android.graphics.Paint Paint}, must not be changed
+     */
+    public Paint getStrokePaint() {
+        return strokePaint;
+    }
+
+    /**
+     * @return fill {@link android.graphics.Paint Paint}, must not be changed
+     */
+    public Paint getFillPaint() {
+        return fillPaint;
+    }
+
+    /**
+     * @return text {@link android.graphics.Paint Paint}, must not be changed
+     */
+    public Paint getTextPaint() {
+        return textPaint;
+    }
+
+    /**
+     * @return {@link com.polonium.linechart.TextAlign TextAlign} for the text
+     */
+    public int getTextAlign() {
+        return textAlign;
+    }
+
+    /**
+     * @param type
+     *            type of point visualisation
+     * @return copy of this style with new type
+     */
+    public PointStyle withType(Type type) {
+        return new PointStyle(type, radius, strokePaint, fillPaint, textPaint, textAlign);
+    }
+
+    /**
+     * @param radius
+     *            radius in pixels
+     * @return copy of this style with new radius
+     */
+    public PointStyle withRadius(float radius) {
+        return new PointStyle(type, radius, strokePaint, fillPaint, textPaint, textAlign);
+    }
+
+    /**
+     * @param strokePaint
+     *            stroke {@link android.graphics.Paint Paint}, must not be changed later
+     * @return copy of this style with new stroke paint
+     */
+    public PointStyle withStrokePaint(Paint strokePaint) {
+        return new PointStyle(type, radius, strokePaint, fillPaint, textPaint, textAlign);
+    }
+
+    /**
+     * @param fillPaint
+     *            fill {@link android.graphics.Paint Paint}, must not be changed later
+     * @return copy of this style with new fill paint
+     */
+    public PointStyle withFillPaint(Paint fillPaint) {
+        return new PointStyle(type, radius, strokePaint, fillPaint, textPaint, textAlign);
+    }
+
+    /**
+     * @param textPaint
+     *            text {@link android.graphics.Paint Paint}, must not be changed later
+     * @return copy of this style with new text paint
+     */
+    public PointStyle withTextPaint(Paint textPaint) {
+        return new PointStyle(type, radius, strokePaint, fillPaint, textPaint, textAlign);
+    }
+
+    /**
+     * @param textAlign
+     *            bitmask from {@link com.polonium.linechart.TextAlign TextAlign}
+     * @return copy of this style with new text align
+     */
+    public PointStyle withTextAlign(int textAlign) {
+        return new PointStyle(type, radius, strokePaint, fillPaint, textPaint, textAlign);
+    }
+
+    /**
+     * @param color
+     *            color in #AARRGGBB
+     * @return copy of this style with stroke of the color
+     */
+    public PointStyle withStrokeColor(int color) {
+        Paint paint = new Paint(strokePaint);
+        paint.setColor(color);
+        return withStrokePaint(paint);
+    }
+
+    /**
+     * @param color
+     *            color in #AARRGGBB
+     * @return copy of this style with fill of the color
+     */
+    public PointStyle withFillColor(int color) {
+        Paint paint = new Paint(fillPaint);
+        paint.setColor(color);
+        return withFillPaint(paint);
+    }
+}
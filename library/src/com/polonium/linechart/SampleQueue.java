@@ -0,0 +1,104 @@
+package com.polonium.linechart;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer single-consumer queue of points. Producers claim a slot by compare-and-set of the
+ * tail and publish it by the slot sequence, the consumer reads published slots in order. Nobody waits: a full queue
+ * rejects new points, an empty one returns nothing.
+ */
+final class SampleQueue {
+
+    private final float[] mXs;
+    private final float[] mYs;
+    private final AtomicLongArray mSequences;
+    private final int mMask;
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    /** Set by the first point after drain, so the consumer is woken once per batch. */
+    private final AtomicBoolean isArmed = new AtomicBoolean();
+    private long mHead = 0;
+
+    /**
+     * @param capacity
+     *            count of points, rounded up to power of two
+     */
+    SampleQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mXs = new float[size];
+        mYs = new float[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mMask = size - 1;
+    }
+
+    /**
+     * Adds the point. May be called on any thread.
+     *
+     * @return false if the queue is full and the point was dropped
+     */
+    boolean offer(float x, float y) {
+        while (true) {
+            long tail = mTail.get();
+            int slot = (int) tail & mMask;
+            long sequence = mSequences.get(slot);
+            if (sequence == tail) {
+                if (!mTail.compareAndSet(tail, tail + 1)) continue;
+                mXs[slot] = x;
+                mYs[slot] = y;
+                // publishes coordinates written above
+                mSequences.lazySet(slot, tail + 1);
+                return true;
+            } else if (sequence < tail) {
+                mDropped.incrementAndGet();
+                return false;
+            }
+            // slot was taken by another producer
+        }
+    }
+
+    /**
+     * @return true if the consumer should be woken for this point
+     */
+    boolean arm() {
+        return isArmed.compareAndSet(false, true);
+    }
+
+    /**
+     * Moves published points to the arrays. Must be called on the consumer thread.
+     *
+     * @return count of moved points, not bigger than array length
+     */
+    int drain(float[] xs, float[] ys) {
+        // points offered after this are either drained now or wake the consumer again
+        isArmed.set(false);
+        int count = 0;
+        while (count < xs.length) {
+            int slot = (int) mHead & mMask;
+            if (mSequences.get(slot) != mHead + 1) break;
+            xs[count] = mXs[slot];
+            ys[count++] = mYs[slot];
+            mSequences.lazySet(slot, mHead + mMask + 1);
+            mHead++;
+        }
+        return count;
+    }
+
+    /**
+     * @return count of points offered to the full queue
+     */
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * @return count of points the queue can hold
+     */
+    int getCapacity() {
+        return mMask + 1;
+    }
+}
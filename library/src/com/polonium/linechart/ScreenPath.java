@@ -0,0 +1,43 @@
+package com.polonium.linechart;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+
+/**
+ * {@link android.graphics.Path Path} in pixels scaled from path in chart coordinates. It is transformed again only
+ * when the source path or the scale is changed, moving of ViewPort is done by translating the canvas.
+ */
+final class ScreenPath {
+
+    private final Path mPath = new Path();
+    private final Matrix mMatrix = new Matrix();
+    private Path mSource;
+    private int mSourceVersion;
+    private float mScaleX = Float.NaN;
+    private float mScaleY = Float.NaN;
+
+    /**
+     * Gets the source path scaled to pixels with vertical axis turned down. Origin stays at chart zero.
+     * 
+     * @param source
+     *            path in chart coordinates
+     * @param sourceVersion
+     *            number changed every time the source path is changed
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param scaleY
+     *            pixels per unit of vertical coordinate
+     * @return cached path
+     */
+    Path get(Path source, int sourceVersion, float scaleX, float scaleY) {
+        if (source != mSource || sourceVersion != mSourceVersion || scaleX != mScaleX || scaleY != mScaleY) {
+            mMatrix.setScale(scaleX, -scaleY);
+            source.transform(mMatrix, mPath);
+            mSource = source;
+            mSourceVersion = sourceVersion;
+            mScaleX = scaleX;
+            mScaleY = scaleY;
+        }
+        return mPath;
+    }
+}
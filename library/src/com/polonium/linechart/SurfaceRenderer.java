@@ -0,0 +1,97 @@
+package com.polonium.linechart;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+
+/**
+ * {@link LineChartView} owned by {@link LineChartSurfaceView}. It is never attached to a window: invalidation and
+ * posted actions of the view are sent to the render thread of the surface view, which is also the thread its lines
+ * are changed on. The surface view calls {@link #attach()} and {@link #release()} on that thread instead of window
+ * callbacks.
+ */
+final class SurfaceRenderer extends LineChartView {
+
+    private LineChartSurfaceView mSurface;
+
+    SurfaceRenderer(LineChartSurfaceView surface, Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mSurface = surface;
+    }
+
+    SurfaceRenderer(LineChartSurfaceView surface, Context context) {
+        super(context);
+        mSurface = surface;
+    }
+
+    /**
+     * Sets size of the chart as layout would do.
+     */
+    void setSize(int width, int height) {
+        measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        layout(0, 0, width, height);
+    }
+
+    @Override
+    Handler getModelHandler() {
+        // called by constructor of the chart before the surface is set
+        return mSurface == null ? null : mSurface.getRenderHandler();
+    }
+
+    @Override
+    public void invalidate() {
+        // called by constructor of the chart before the surface is set
+        if (mSurface == null) return;
+        mSurface.requestRender(0, 0, getWidth(), getHeight());
+    }
+
+    @Override
+    public void postInvalidate() {
+        postInvalidate(0, 0, getWidth(), getHeight());
+    }
+
+    @Override
+    public void postInvalidate(final int left, final int top, final int right, final int bottom) {
+        Handler handler = getModelHandler();
+        if (handler == null) return;
+        if (Looper.myLooper() == handler.getLooper()) {
+            mSurface.requestRender(left, top, right, bottom);
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurface.requestRender(left, top, right, bottom);
+            }
+        });
+    }
+
+    @Override
+    public boolean post(Runnable action) {
+        // actions are dropped while the render thread is stopped
+        Handler handler = getModelHandler();
+        return handler != null && handler.post(action);
+    }
+
+    @Override
+    public boolean postDelayed(Runnable action, long delayMillis) {
+        Handler handler = getModelHandler();
+        return handler != null && handler.postDelayed(action, delayMillis);
+    }
+
+    @Override
+    public void postOnAnimation(Runnable action) {
+        // frames are requested by invalidation, the action runs before the next one
+        post(action);
+    }
+
+    @Override
+    public boolean removeCallbacks(Runnable action) {
+        // nothing to remove if the render thread is stopped
+        Handler handler = getModelHandler();
+        if (handler != null) handler.removeCallbacks(action);
+        return true;
+    }
+}
@@ -0,0 +1,375 @@
+package com.polonium.linechart;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.Process;
+
+/**
+ * Offscreen cache of chart content. Content is split into square bitmap tiles fixed in chart pixels of the current
+ * zoom, so panning only shifts tiles. Tiles are rendered in parallel on a shared worker pool from
+ * {@link TileSnapshot}s and kept in LRU order under a byte budget. Tiles aren't created while zoom changes, they would
+ * be outdated by the next frame. All methods must be called on the thread of the view's model, rendered tiles are
+ * delivered to it.
+ */
+final class TileCache {
+
+    static final int TILE_SIZE = 256;
+    private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+    private static final int MAX_POOLED_BITMAPS = 4;
+
+    private static final ExecutorService sExecutor = createExecutor();
+
+    /** Time zoom must stay unchanged before tiles are created. */
+    private static final long SCALE_SETTLE_DELAY = 150;
+
+    private final LineChartView mView;
+    private final LinkedHashMap<Key, Tile> mTiles = new LinkedHashMap<Key, Tile>(16, 0.75f, true);
+    private final ArrayList<Bitmap> mPool = new ArrayList<Bitmap>();
+    private final ArrayList<Tile> mVisible = new ArrayList<Tile>();
+    private final Key mProbe = new Key();
+    private long mBudget = 8L * 1024 * 1024;
+    private float mMargin = 0;
+
+    /**
+     * Position of tile: zoom, column and row.
+     */
+    private static final class Key {
+        float scaleX;
+        float scaleY;
+        int column;
+        int row;
+
+        Key set(float scaleX, float scaleY, int column, int row) {
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            this.column = column;
+            this.row = row;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return key.scaleX == scaleX && key.scaleY == scaleY && key.column == column && key.row == row;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Float.floatToIntBits(scaleX);
+            hash = 31 * hash + Float.floatToIntBits(scaleY);
+            hash = 31 * hash + column;
+            return 31 * hash + row;
+        }
+    }
+
+    private static final class Tile {
+        final Key key;
+        Bitmap bitmap;
+        boolean isReady = false;
+        boolean isRendering = false;
+        boolean isEvicted = false;
+        int generation = 0;
+        Future<?> future;
+
+        Tile(Key key) {
+            this.key = key;
+        }
+    }
+
+    private float mScaleX = Float.NaN;
+    private float mScaleY = Float.NaN;
+    private float mTranslateX = 0;
+    private float mTranslateY = 0;
+    private final RectF mClip = new RectF();
+    private final Runnable mScaleSettled = new Runnable() {
+        @Override
+        public void run() {
+            invalidateScreen(mClip.left, mClip.top, mClip.right, mClip.bottom);
+        }
+    };
+
+    TileCache(LineChartView view) {
+        mView = view;
+    }
+
+    private static ExecutorService createExecutor() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LineChartTiles");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sets memory limit for tile bitmaps. Visible tiles are kept even if they don't fit.
+     *
+     * @param bytes
+     *            budget in bytes
+     */
+    void setBudget(long bytes) {
+        mBudget = bytes;
+        trim();
+    }
+
+    long getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * Draws ready visible tiles and schedules rendering of missing ones. Parts of missing and outdated tiles are drawn
+     * directly by {@link LineChartView#drawContent(Canvas)} clipped to them.
+     *
+     * @param translateX
+     *            horizontal position of chart pixel zero on the canvas
+     * @param translateY
+     *            vertical position of chart pixel zero on the canvas
+     * @param clipLeft
+     *            left side of area to cover
+     * @param clipTop
+     *            top side of area to cover
+     * @param clipRight
+     *            right side of area to cover
+     * @param clipBottom
+     *            bottom side of area to cover
+     * @param margin
+     *            distance in pixels markers and texts may reach from their points
+     * @return false if zoom is changing, content should be drawn directly then
+     */
+    boolean draw(Canvas canvas, List<Line> lines, ChartGrid grid, float scaleX, float scaleY, float translateX,
+                 float translateY, float clipLeft, float clipTop, float clipRight, float clipBottom, float margin) {
+        mTranslateX = translateX;
+        mTranslateY = translateY;
+        mClip.set(clipLeft, clipTop, clipRight, clipBottom);
+        if (margin != mMargin) {
+            mMargin = margin;
+            clear();
+        }
+        if (scaleX != mScaleX || scaleY != mScaleY) {
+            // tiles are created once zoom stops changing
+            mScaleX = scaleX;
+            mScaleY = scaleY;
+            mView.removeCallbacks(mScaleSettled);
+            mView.postDelayed(mScaleSettled, SCALE_SETTLE_DELAY);
+            return false;
+        }
+        int firstColumn = (int) Math.floor((clipLeft - translateX) / TILE_SIZE);
+        int lastColumn = (int) Math.floor((clipRight - translateX) / TILE_SIZE);
+        int firstRow = (int) Math.floor((clipTop - translateY) / TILE_SIZE);
+        int lastRow = (int) Math.floor((clipBottom - translateY) / TILE_SIZE);
+
+        mVisible.clear();
+        for (int row = firstRow; row <= lastRow; row++) {
+            // run of missing tiles in the row is drawn directly at once
+            int missingFrom = Integer.MAX_VALUE;
+            for (int column = firstColumn; column <= lastColumn + 1; column++) {
+                Tile tile = null;
+                if (column <= lastColumn) {
+                    tile = mTiles.get(mProbe.set(scaleX, scaleY, column, row));
+                    if (tile == null) {
+                        tile = new Tile(new Key().set(scaleX, scaleY, column, row));
+                        mTiles.put(tile.key, tile);
+                    }
+                    mVisible.add(tile);
+                }
+                if (tile != null && !tile.isReady) {
+                    if (!tile.isRendering) render(tile, TileSnapshot.create(lines,
+                                                                            grid,
+                                                                            scaleX,
+                                                                            scaleY,
+                                                                            column,
+                                                                            row,
+                                                                            TILE_SIZE,
+                                                                            margin));
+                    missingFrom = Math.min(missingFrom, column);
+                    continue;
+                }
+                if (missingFrom <= column - 1) {
+                    drawDirectly(canvas, missingFrom, column - 1, row);
+                    missingFrom = Integer.MAX_VALUE;
+                }
+                if (tile != null) {
+                    canvas.drawBitmap(tile.bitmap,
+                                      (float) column * TILE_SIZE + translateX,
+                                      (float) row * TILE_SIZE + translateY,
+                                      null);
+                }
+            }
+        }
+        trim();
+        return true;
+    }
+
+    private void drawDirectly(Canvas canvas, int fromColumn, int toColumn, int row) {
+        float left = (float) fromColumn * TILE_SIZE + mTranslateX;
+        float top = (float) row * TILE_SIZE + mTranslateY;
+        float right = (float) (toColumn + 1) * TILE_SIZE + mTranslateX;
+        float bottom = (float) (row + 1) * TILE_SIZE + mTranslateY;
+        // tiles out of the dirty region are not drawn anyway
+        if (canvas.quickReject(left, top, right, bottom, Canvas.EdgeType.BW)) return;
+        canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+        mView.drawContent(canvas);
+        canvas.restore();
+    }
+
+    private void render(final Tile tile, final TileSnapshot snapshot) {
+        final int generation = tile.generation;
+        Bitmap bitmap = tile.bitmap;
+        if (bitmap == null && !mPool.isEmpty()) bitmap = mPool.remove(mPool.size() - 1);
+        final Bitmap reused = bitmap;
+        tile.bitmap = null;
+        tile.isRendering = true;
+        tile.future = sExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                Bitmap bitmap = reused != null ? reused : Bitmap.createBitmap(TILE_SIZE,
+                                                                             TILE_SIZE,
+                                                                             Bitmap.Config.ARGB_8888);
+                bitmap.eraseColor(0);
+                snapshot.draw(new Canvas(bitmap));
+                final Bitmap result = bitmap;
+                // model thread may be replaced while rendering
+                Handler handler = mView.getModelHandler();
+                // the thread is stopped after release(), tile is dropped with the cache
+                if (handler == null) return;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onRendered(tile, generation, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onRendered(Tile tile, int generation, Bitmap bitmap) {
+        tile.isRendering = false;
+        tile.future = null;
+        if (tile.isEvicted) {
+            recycle(bitmap);
+            return;
+        }
+        tile.bitmap = bitmap;
+        // content changed while rendering: tile stays dirty and is scheduled again on next frame
+        tile.isReady = generation == tile.generation;
+        if (tile.key.scaleX != mScaleX || tile.key.scaleY != mScaleY) return;
+        invalidateScreen((float) tile.key.column * TILE_SIZE + mTranslateX,
+                         (float) tile.key.row * TILE_SIZE + mTranslateY,
+                         (float) (tile.key.column + 1) * TILE_SIZE + mTranslateX,
+                         (float) (tile.key.row + 1) * TILE_SIZE + mTranslateY);
+    }
+
+    /**
+     * Requests redrawing of the part of the view covered by tiles.
+     */
+    private void invalidateScreen(float left, float top, float right, float bottom) {
+        int l = (int) Math.floor(Math.max(left, mClip.left));
+        int t = (int) Math.floor(Math.max(top, mClip.top));
+        int r = (int) Math.ceil(Math.min(right, mClip.right));
+        int b = (int) Math.ceil(Math.min(bottom, mClip.bottom));
+        if (l < r && t < b) mView.postInvalidate(l, t, r, b);
+    }
+
+    /**
+     * Evicts least recently used tiles exceeding the budget.
+     */
+    private void trim() {
+        long bytes = mTiles.size() * TILE_BYTES;
+        Iterator<Tile> iterator = mTiles.values().iterator();
+        while (bytes > mBudget && iterator.hasNext()) {
+            Tile tile = iterator.next();
+            if (mVisible.contains(tile)) continue;
+            iterator.remove();
+            evict(tile);
+            bytes -= TILE_BYTES;
+        }
+    }
+
+    private void evict(Tile tile) {
+        tile.isEvicted = true;
+        if (tile.isRendering) {
+            // running job finishes and recycles its bitmap in onRendered
+            if (tile.future != null) tile.future.cancel(false);
+            return;
+        }
+        recycle(tile.bitmap);
+        tile.bitmap = null;
+    }
+
+    private void recycle(Bitmap bitmap) {
+        if (bitmap == null) return;
+        if (mPool.size() < MAX_POOLED_BITMAPS) {
+            mPool.add(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Marks tiles covering points between <i>fromX</i> and <i>toX</i> as outdated. They are kept on screen until
+     * rendered again.
+     *
+     * @param fromX
+     *            minimal horizontal coordinate of changed points
+     * @param toX
+     *            maximal horizontal coordinate of changed points
+     */
+    void invalidate(float fromX, float toX) {
+        for (Tile tile : mTiles.values()) {
+            float left = ((float) tile.key.column * TILE_SIZE - mMargin) / tile.key.scaleX;
+            float right = ((float) (tile.key.column + 1) * TILE_SIZE + mMargin) / tile.key.scaleX;
+            if (right < fromX || left > toX) continue;
+            tile.generation++;
+            tile.isReady = false;
+        }
+    }
+
+    /**
+     * Marks all tiles as outdated.
+     */
+    void clear() {
+        invalidate(-Float.MAX_VALUE, Float.MAX_VALUE);
+    }
+
+    /**
+     * Drops all tiles and bitmaps. Cache stays usable.
+     */
+    void release() {
+        mView.removeCallbacks(mScaleSettled);
+        mScaleX = Float.NaN;
+        mScaleY = Float.NaN;
+        for (Tile tile : mTiles.values()) {
+            evict(tile);
+        }
+        mTiles.clear();
+        mVisible.clear();
+        for (Bitmap bitmap : mPool) {
+            bitmap.recycle();
+        }
+        mPool.clear();
+    }
+
+    /**
+     * @return bytes allocated for tile bitmaps
+     */
+    long getMemoryUsage() {
+        return (mTiles.size() + mPool.size()) * TILE_BYTES;
+    }
+}
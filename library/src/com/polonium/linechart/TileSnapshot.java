@@ -0,0 +1,289 @@
+package com.polonium.linechart;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * Content of one tile of {@link TileCache}: grid, lines, markers and texts in the tile area with copies of their
+ * paints. It is taken on UI thread and drawn on a worker thread, later changes of lines don't affect it. Coordinates
+ * are kept in pixels relative to the tile corner.
+ */
+final class TileSnapshot {
+
+    private final int mSize;
+    private final float mLeft;
+    private final float mTop;
+    private final float mScaleX;
+    private final float mScaleY;
+
+    private final int mStepHor;
+    private final int mStepVer;
+    private final int mHorSubLinesCount;
+    private final int mVerSubLinesCount;
+    private final Paint mMainVerPaint;
+    private final Paint mSubVerPaint;
+    private final Paint mMainHorPaint;
+    private final Paint mSubHorPaint;
+
+    private final ArrayList<LineContent> mLines = new ArrayList<LineContent>();
+
+    private float[] mMarkerXs = new float[16];
+    private float[] mMarkerYs = new float[16];
+    private PointStyle[] mMarkerStyles = new PointStyle[16];
+    private int mMarkersCount = 0;
+
+    private final ArrayList<String> mTexts = new ArrayList<String>();
+    private final ArrayList<PointStyle> mTextStyles = new ArrayList<PointStyle>();
+    private final ArrayList<Paint> mTextPaints = new ArrayList<Paint>();
+    private final ArrayList<float[]> mTextPositions = new ArrayList<float[]>();
+
+    /**
+     * Line in the tile: polyline of points or copy of smoothed path in chart coordinates.
+     */
+    private static final class LineContent {
+        Paint paint;
+        Paint filledPaint;
+        float[] xs;
+        float[] ys;
+        int count;
+        Path path;
+        Path filledPath;
+    }
+
+    private TileSnapshot(ChartGrid grid, float scaleX, float scaleY, int column, int row, int size) {
+        mSize = size;
+        mLeft = (float) column * size;
+        mTop = (float) row * size;
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+        mStepHor = grid.stepHor;
+        mStepVer = grid.stepVer;
+        mHorSubLinesCount = grid.horSubLinesCount;
+        mVerSubLinesCount = grid.verSubLinesCount;
+        mMainVerPaint = grid.verMainLinesEnabled ? new Paint(grid.mainVerLinesPaint) : null;
+        mSubVerPaint = grid.verMainLinesEnabled && grid.verSubLinesEnabled ? new Paint(grid.subVerLinesPaint) : null;
+        mMainHorPaint = grid.horMainLinesEnabled ? new Paint(grid.mainHorLinesPaint) : null;
+        mSubHorPaint = grid.horMainLinesEnabled && grid.horSubLinesEnabled ? new Paint(grid.subHorLinesPaint) : null;
+    }
+
+    /**
+     * Takes content of the tile. Must be called on UI thread.
+     *
+     * @param lines
+     *            lines of the chart
+     * @param grid
+     *            grid of the chart
+     * @param scaleX
+     *            pixels per unit of horizontal coordinate
+     * @param scaleY
+     *            pixels per unit of vertical coordinate
+     * @param column
+     *            column of the tile, its left edge is at <i>column * size</i> pixels from chart zero
+     * @param row
+     *            row of the tile, its top edge is at <i>row * size</i> pixels below chart zero
+     * @param size
+     *            size of the tile in pixels
+     * @param margin
+     *            distance in pixels from tile sides to points which markers and texts may reach the tile
+     * @return snapshot
+     */
+    static TileSnapshot create(List<Line> lines, ChartGrid grid, float scaleX, float scaleY, int column, int row,
+                               int size, float margin) {
+        TileSnapshot snapshot = new TileSnapshot(grid, scaleX, scaleY, column, row, size);
+        IdentityHashMap<PointStyle, Paint> textPaints = new IdentityHashMap<PointStyle, Paint>();
+        for (Line line : lines) {
+            snapshot.addLine(line);
+            snapshot.addMarkers(line, margin, textPaints);
+        }
+        return snapshot;
+    }
+
+    private void addLine(Line line) {
+        LineContent content = new LineContent();
+        content.paint = new Paint(line.getPaint());
+        if (line.isFilled()) content.filledPaint = new Paint(line.getFilledPaint());
+        if (line.isSmoothed()) {
+            // spline depends on all points, path is copied whole
+            content.path = new Path(line.getPath());
+            if (line.isFilled()) content.filledPath = new Path(line.getFilledPath());
+            mLines.add(content);
+            return;
+        }
+        double fromX = mLeft / mScaleX;
+        double toX = (mLeft + mSize) / mScaleX;
+        // one point outside from each side keeps segments crossing tile edges
+        int from = Math.max(line.lowerBound((float) fromX) - 1, 0);
+        int to = Math.min(line.upperBound((float) toX) + 1, line.getPointsCount());
+        if (to - from < 2) return;
+        int capacity = 4 * (mSize + 3);
+        if (to - from > capacity) {
+            content.xs = new float[capacity];
+            content.ys = new float[capacity];
+            content.count = Decimator.m4(line, null, -1, from, to, fromX, mScaleX, content.xs, content.ys);
+        } else {
+            content.xs = new float[to - from];
+            content.ys = new float[to - from];
+            for (int i = from; i < to; i++) {
+                content.xs[content.count] = line.getX(i);
+                content.ys[content.count++] = line.getY(i);
+            }
+        }
+        for (int i = 0; i < content.count; i++) {
+            content.xs[i] = content.xs[i] * mScaleX - mLeft;
+            content.ys[i] = -content.ys[i] * mScaleY - mTop;
+        }
+        mLines.add(content);
+    }
+
+    private void addMarkers(Line line, float margin, IdentityHashMap<PointStyle, Paint> textPaints) {
+        int from = line.lowerBound((mLeft - margin) / mScaleX);
+        int to = line.upperBound((mLeft + mSize + margin) / mScaleX);
+        for (int i = from; i < to; i++) {
+            float x = line.getX(i) * mScaleX - mLeft;
+            float y = -line.getY(i) * mScaleY - mTop;
+            if (y < -margin || y > mSize + margin) continue;
+            LinePoint point = line.getAttachedPoint(i);
+            PointStyle style = point == null ? line.getPointStyle(i) : (point.isVisible() ? point.getStyle() : null);
+            if (style != null) addMarker(x, y, style);
+            if (point != null && point.isTextVisible() && point.getText() != null) {
+                Paint paint = textPaints.get(point.getStyle());
+                if (paint == null) {
+                    paint = new Paint(point.getStyle().getTextPaint());
+                    textPaints.put(point.getStyle(), paint);
+                }
+                mTexts.add(point.getText());
+                mTextStyles.add(point.getStyle());
+                mTextPaints.add(paint);
+                mTextPositions.add(new float[] { x, y });
+            }
+        }
+    }
+
+    private void addMarker(float x, float y, PointStyle style) {
+        if (mMarkersCount == mMarkerXs.length) {
+            int length = mMarkersCount * 2;
+            float[] xs = new float[length];
+            float[] ys = new float[length];
+            PointStyle[] styles = new PointStyle[length];
+            System.arraycopy(mMarkerXs, 0, xs, 0, mMarkersCount);
+            System.arraycopy(mMarkerYs, 0, ys, 0, mMarkersCount);
+            System.arraycopy(mMarkerStyles, 0, styles, 0, mMarkersCount);
+            mMarkerXs = xs;
+            mMarkerYs = ys;
+            mMarkerStyles = styles;
+        }
+        mMarkerXs[mMarkersCount] = x;
+        mMarkerYs[mMarkersCount] = y;
+        mMarkerStyles[mMarkersCount++] = style;
+    }
+
+    /**
+     * Draws the content in the same order as {@link LineChartView} does: grid, lines, markers and texts. May be called
+     * on any thread.
+     *
+     * @param canvas
+     *            canvas of the tile
+     */
+    void draw(Canvas canvas) {
+        drawVerticalGrid(canvas);
+        drawHorizontalGrid(canvas);
+        Matrix matrix = null;
+        for (LineContent content : mLines) {
+            if (content.path != null) {
+                if (matrix == null) {
+                    matrix = new Matrix();
+                    matrix.setScale(mScaleX, -mScaleY);
+                    matrix.postTranslate(-mLeft, -mTop);
+                }
+                if (content.filledPath != null) {
+                    content.filledPath.transform(matrix);
+                    canvas.drawPath(content.filledPath, content.filledPaint);
+                }
+                content.path.transform(matrix);
+                canvas.drawPath(content.path, content.paint);
+                continue;
+            }
+            Path path = new Path();
+            path.moveTo(content.xs[0], content.ys[0]);
+            for (int i = 1; i < content.count; i++) {
+                path.lineTo(content.xs[i], content.ys[i]);
+            }
+            if (content.filledPaint != null) {
+                Path filledPath = new Path(path);
+                float zero = -mTop;
+                filledPath.lineTo(content.xs[content.count - 1], zero);
+                filledPath.lineTo(content.xs[0], zero);
+                filledPath.close();
+                canvas.drawPath(filledPath, content.filledPaint);
+            }
+            canvas.drawPath(path, content.paint);
+        }
+
+        ArrayList<MarkerBatch> batches = new ArrayList<MarkerBatch>();
+        for (int i = 0; i < mMarkersCount; i++) {
+            MarkerBatch batch = null;
+            for (int j = 0; j < batches.size() && batch == null; j++) {
+                if (batches.get(j).matches(mMarkerStyles[i])) batch = batches.get(j);
+            }
+            if (batch == null) {
+                batch = new MarkerBatch(mMarkerStyles[i]);
+                batches.add(batch);
+            }
+            batch.add(mMarkerXs[i], mMarkerYs[i]);
+        }
+        for (MarkerBatch batch : batches) {
+            batch.draw(canvas);
+        }
+
+        for (int i = 0; i < mTexts.size(); i++) {
+            float[] position = mTextPositions.get(i);
+            LineChartView.drawPointText(canvas,
+                                        mTexts.get(i),
+                                        mTextStyles.get(i),
+                                        mTextPaints.get(i),
+                                        position[0],
+                                        position[1]);
+        }
+    }
+
+    private void drawVerticalGrid(Canvas canvas) {
+        if (mMainVerPaint == null || mStepHor <= 0) return;
+        float subStep = (float) mStepHor / (mHorSubLinesCount + 1);
+        long first = (long) Math.floor(mLeft / mScaleX / mStepHor);
+        long last = (long) Math.ceil((mLeft + mSize) / mScaleX / mStepHor);
+        for (long k = first; k <= last; k++) {
+            float x = k * mStepHor;
+            if (mSubVerPaint != null) {
+                for (int i = 1; i <= mHorSubLinesCount; i++) {
+                    float subX = (x + i * subStep) * mScaleX - mLeft;
+                    canvas.drawLine(subX, 0, subX, mSize, mSubVerPaint);
+                }
+            }
+            canvas.drawLine(x * mScaleX - mLeft, 0, x * mScaleX - mLeft, mSize, mMainVerPaint);
+        }
+    }
+
+    private void drawHorizontalGrid(Canvas canvas) {
+        if (mMainHorPaint == null || mStepVer <= 0) return;
+        float subStep = (float) mStepVer / (mVerSubLinesCount + 1);
+        // vertical coordinates grow up, rows grow down
+        long first = (long) Math.floor(-(mTop + mSize) / mScaleY / mStepVer);
+        long last = (long) Math.ceil(-mTop / mScaleY / mStepVer);
+        for (long k = first; k <= last; k++) {
+            float y = k * mStepVer;
+            if (mSubHorPaint != null) {
+                for (int i = 1; i <= mVerSubLinesCount; i++) {
+                    float subY = -(y + i * subStep) * mScaleY - mTop;
+                    canvas.drawLine(0, subY, mSize, subY, mSubHorPaint);
+                }
+            }
+            canvas.drawLine(0, -y * mScaleY - mTop, mSize, -y * mScaleY - mTop, mMainHorPaint);
+        }
+    }
+}